@@ -0,0 +1,213 @@
+package com.yourcompany.erp.order.service;
+
+import com.yourcompany.erp.customer.entity.Customer;
+import com.yourcompany.erp.customer.repository.CustomerRepository;
+import com.yourcompany.erp.order.dto.OrderDTO;
+import com.yourcompany.erp.product.entity.Product;
+import com.yourcompany.erp.product.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 下单并发压测：多线程对本地 PostgreSQL 调用 createOrder，
+ * 输出吞吐量、延迟分位数和每单 SQL 语句数
+ * 运行：mvn -Pbenchmark test -Dtest=OrderPlacementBenchmark -Dbench.threads=16 -Dbench.seconds=60
+ * 注意：会向当前数据源写入测试客户、商品和订单，只能对本地或压测库运行
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.hikari.maximum-pool-size=32",
+        "logging.level.com.yourcompany.erp=WARN",
+        "logging.level.org.springframework.web=WARN",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        // 压测期间不运行任何定时任务（财务事件投递、逾期扫描、月结、过期清理），避免把后台语句计入每单语句数
+        "erp.scheduling.enabled=false"
+})
+class OrderPlacementBenchmark {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${bench.threads:8}")
+    private int threads;
+
+    @Value("${bench.seconds:30}")
+    private int seconds;
+
+    @Value("${bench.warmup-seconds:10}")
+    private int warmupSeconds;
+
+    @Value("${bench.customers:1000}")
+    private int customerCount;
+
+    @Value("${bench.products:5000}")
+    private int productCount;
+
+    @Value("${bench.max-lines:5}")
+    private int maxLines;
+
+    @Test
+    void run() throws Exception {
+        List<Long> customerIds = seedCustomers();
+        List<Long> productIds = seedProducts();
+
+        // 预热：让 JIT、连接池和号段缓存就绪
+        drive(customerIds, productIds, warmupSeconds);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        Result result = drive(customerIds, productIds, seconds);
+        long statements = statistics.getPrepareStatementCount();
+
+        assertTrue(result.orders > 0, "压测期间没有成功的订单");
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.println("========================================");
+        System.out.printf("下单压测: %d 线程, %d 秒, %d 客户, %d 商品, 每单 1-%d 行%n",
+                threads, seconds, customerCount, productCount, maxLines);
+        System.out.printf("成功订单: %d, 失败: %d%n", result.orders, result.failures);
+        System.out.printf("吞吐量: %.1f 单/秒%n", result.orders / (result.elapsedNanos / 1e9));
+        System.out.printf("延迟(ms): p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), latencies[latencies.length - 1] / 1e6);
+        System.out.printf("每单 SQL 语句数: %.2f (共 %d)%n", (double) statements / result.orders, statements);
+        System.out.println("========================================");
+    }
+
+    /**
+     * 在指定时间内多线程下单，记录每个成功订单的耗时
+     */
+    private Result drive(List<Long> customerIds, List<Long> productIds, int durationSeconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        List<Future<Result>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Result local = new Result();
+                long[] latencies = new long[1024];
+                while (System.nanoTime() < deadline) {
+                    OrderDTO dto = randomOrder(random, customerIds, productIds);
+                    long begin = System.nanoTime();
+                    try {
+                        orderService.createOrder(dto);
+                    } catch (RuntimeException e) {
+                        local.failures++;
+                        continue;
+                    }
+                    if (local.orders == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    }
+                    latencies[(int) local.orders++] = System.nanoTime() - begin;
+                }
+                local.latencies = Arrays.copyOf(latencies, (int) local.orders);
+                return local;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Result total = new Result();
+        total.latencies = new long[0];
+        for (Future<Result> future : futures) {
+            Result local = future.get();
+            total.orders += local.orders;
+            total.failures += local.failures;
+            long[] merged = Arrays.copyOf(total.latencies, total.latencies.length + local.latencies.length);
+            System.arraycopy(local.latencies, 0, merged, total.latencies.length, local.latencies.length);
+            total.latencies = merged;
+        }
+        total.elapsedNanos = System.nanoTime() - begin;
+        executor.shutdown();
+        return total;
+    }
+
+    private OrderDTO randomOrder(ThreadLocalRandom random, List<Long> customerIds, List<Long> productIds) {
+        OrderDTO dto = new OrderDTO();
+        dto.setCustomerId(customerIds.get(random.nextInt(customerIds.size())));
+        int lines = random.nextInt(maxLines) + 1;
+        List<OrderDTO.OrderItemDTO> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderDTO.OrderItemDTO item = new OrderDTO.OrderItemDTO();
+            item.setProductId(productIds.get(random.nextInt(productIds.size())));
+            item.setQuantity(random.nextInt(3) + 1);
+            items.add(item);
+        }
+        dto.setItems(items);
+        return dto;
+    }
+
+    private List<Long> seedCustomers() {
+        List<Customer> customers = new ArrayList<>(customerCount);
+        for (int i = 0; i < customerCount; i++) {
+            Customer customer = new Customer();
+            customer.setName("压测客户" + i);
+            customer.setLevel(i % 10 == 0 ? Customer.CustomerLevel.VIP : Customer.CustomerLevel.NORMAL);
+            customer.setCreditLimitCents(100_000_000_000_000L);
+            customer.setBalanceCents(0L);
+            customers.add(customer);
+        }
+        return customerRepository.saveAll(customers).stream().map(Customer::getId).toList();
+    }
+
+    private List<Long> seedProducts() {
+        List<Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            Product product = new Product();
+            product.setName("压测商品" + i);
+            product.setNormalPriceCents(1000L + i % 500 * 100L);
+            product.setVipPriceCents(900L + i % 500 * 100L);
+            product.setStock(100_000_000);
+            product.setStatus(1);
+            products.add(product);
+        }
+        return productRepository.saveAll(products).stream().map(Product::getId).toList();
+    }
+
+    private static double percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static class Result {
+        private long orders;
+        private long failures;
+        private long elapsedNanos;
+        private long[] latencies;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.yourcompany.erp.order.service;
+
+import com.yourcompany.erp.customer.entity.Customer;
+import com.yourcompany.erp.order.dto.OrderDTO;
+import com.yourcompany.erp.order.dto.OrderVO;
+import com.yourcompany.erp.order.entity.Order;
+import com.yourcompany.erp.order.entity.OrderItem;
+import com.yourcompany.erp.product.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单热路径中纯内存部分的微基准：计价（priceItems）和 VO 转换（convertToVO）
+ * 运行：mvn -Pbenchmark test -Dtest=OrderPricingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderPricingBenchmark {
+
+    /**
+     * 每单明细行数
+     */
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private final OrderService orderService = new OrderService();
+
+    private Customer customer;
+    private List<OrderDTO.OrderItemDTO> itemDtos;
+    private Map<Long, Product> products;
+    private Map<Long, Integer> quantities;
+    private Order order;
+    private List<OrderItem> items;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        customer = new Customer();
+        customer.setId(1L);
+        customer.setName("基准客户");
+        customer.setLevel(Customer.CustomerLevel.VIP);
+
+        itemDtos = new ArrayList<>(lines);
+        products = new HashMap<>();
+        quantities = new LinkedHashMap<>();
+        for (long i = 1; i <= lines; i++) {
+            Product product = new Product();
+            product.setId(i);
+            product.setName("基准商品" + i);
+            product.setNormalPriceCents(10000L + i * 100);
+            product.setVipPriceCents(9000L + i * 100);
+            product.setStock(1_000_000);
+            products.put(i, product);
+
+            OrderDTO.OrderItemDTO itemDto = new OrderDTO.OrderItemDTO();
+            itemDto.setProductId(i);
+            itemDto.setQuantity((int) (i % 5) + 1);
+            itemDtos.add(itemDto);
+            quantities.merge(i, itemDto.getQuantity(), Integer::sum);
+        }
+
+        items = orderService.priceItems(customer, itemDtos, products, quantities);
+        order = new Order();
+        order.setId(1L);
+        order.setOrderNo("ORD2025010100000001");
+        order.setCustomerId(customer.getId());
+        order.setCustomerName(customer.getName());
+        order.setTotalAmountCents(items.stream().mapToLong(OrderItem::getSubtotalCents).sum());
+        order.setStatus(Order.OrderStatus.PENDING);
+        order.setCreateTime(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public List<OrderItem> priceItems() {
+        return orderService.priceItems(customer, itemDtos, products, quantities);
+    }
+
+    @Benchmark
+    public OrderVO convertToVO() {
+        return orderService.convertToVO(order, items);
+    }
+
+    /**
+     * 由 surefire 在 benchmark 环境下触发
+     */
+    @Test
+    void run() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OrderPricingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
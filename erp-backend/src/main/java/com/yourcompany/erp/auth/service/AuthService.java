@@ -101,8 +101,7 @@ public class AuthService {
         customer.setName(dto.getCustomerName());
         customer.setPhone(dto.getPhone());
         customer.setLevel(Customer.CustomerLevel.NORMAL);  // 默认普通客户
-        customer.setCreditLimit(5000.0);  // 默认信用额度 5000
-        customer.setBalance(0.0);
+        customer.setCreditLimitCents(500000L);  // 默认信用额度 5000 元
         customer = customerRepository.save(customer);
 
         // 3. 创建用户记录
@@ -0,0 +1,15 @@
+package com.yourcompany.erp.common.bizno;
+
+/**
+ * 业务单号生成器（订单号、收款单号等）
+ */
+public interface BizNoGenerator {
+
+    /**
+     * 生成下一个单号
+     * @param prefix 单号前缀，同时作为序列名（如 ORD、PAY）
+     * @return 前缀 + 日期 + 序号，如 ORD2025010100001234
+     */
+    String next(String prefix);
+
+}
@@ -0,0 +1,21 @@
+package com.yourcompany.erp.common.bizno;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 业务序列表（号段分配）
+ */
+@Data
+@Entity
+@Table(name = "biz_sequence")
+public class BizSequence {
+
+    @Id
+    @Column(length = 50)
+    private String name;  // 序列名（单号前缀）
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;  // 下一个未分配的号段起点
+
+}
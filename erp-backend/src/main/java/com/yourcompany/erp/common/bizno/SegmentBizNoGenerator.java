@@ -0,0 +1,157 @@
+package com.yourcompany.erp.common.bizno;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 号段模式单号生成器
+ * 每次从数据库领取一段序号缓存在内存中，用完再领，多节点、重启都不会重号
+ * 号段由专用线程通过专用连接领取（不占业务连接池、不在业务事务内），当前号段用掉一半时预取下一段，
+ * 业务线程通常无需等待数据库
+ */
+@Slf4j
+@Component
+public class SegmentBizNoGenerator implements BizNoGenerator {
+
+    private static final int SEQ_WIDTH = 8;  // 序号最少位数
+
+    /** 分配一个号段（不存在则创建），自动提交，业务回滚也不会重复发号；返回号段结束值（不含） */
+    private static final String ALLOCATE_SQL =
+            "INSERT INTO biz_sequence (name, next_value) VALUES (?, 1 + ?) " +
+            "ON CONFLICT (name) DO UPDATE SET next_value = biz_sequence.next_value + ? " +
+            "RETURNING next_value";
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Value("${erp.bizno.segment-size:200}")
+    private long segmentSize;
+
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    private final ExecutorService allocator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "bizno-allocator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private HikariDataSource allocatorDataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile DatePart datePart = new DatePart(LocalDate.now());
+
+    @PostConstruct
+    public void init() {
+        allocatorDataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        allocatorDataSource.setPoolName("bizno");
+        allocatorDataSource.setMaximumPoolSize(1);
+        allocatorDataSource.setMinimumIdle(0);
+        jdbcTemplate = new JdbcTemplate(allocatorDataSource);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        allocator.shutdownNow();
+        allocatorDataSource.close();
+    }
+
+    @Override
+    public String next(String prefix) {
+        long seq = segments.computeIfAbsent(prefix, Segment::new).next();
+
+        DatePart today = currentDate();
+        String digits = Long.toString(seq);
+        StringBuilder sb = new StringBuilder(prefix.length() + 8 + Math.max(SEQ_WIDTH, digits.length()));
+        sb.append(prefix).append(today.text);
+        for (int i = digits.length(); i < SEQ_WIDTH; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits).toString();
+    }
+
+    /**
+     * 当天日期串（跨天时才重新格式化）
+     */
+    private DatePart currentDate() {
+        DatePart current = datePart;
+        LocalDate today = LocalDate.now();
+        if (!current.date.equals(today)) {
+            current = new DatePart(today);
+            datePart = current;
+        }
+        return current;
+    }
+
+    /**
+     * 在专用线程上领取号段，返回号段结束值
+     */
+    private CompletableFuture<Long> allocate(String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            Long max = jdbcTemplate.queryForObject(ALLOCATE_SQL, Long.class, name, segmentSize, segmentSize);
+            log.debug("序列 {} 领取号段 [{}, {})", name, max - segmentSize, max);
+            return max;
+        }, allocator);
+    }
+
+    /**
+     * 内存中的号段 [next, max)，另有预取中的下一号段
+     */
+    private class Segment {
+
+        private final String name;
+        private long next;
+        private long max;
+        private CompletableFuture<Long> prefetch;
+
+        Segment(String name) {
+            this.name = name;
+        }
+
+        synchronized long next() {
+            if (next >= max) {
+                // 预取未完成时等待专用线程，不占用当前事务的连接
+                CompletableFuture<Long> pending = prefetch != null ? prefetch : allocate(name);
+                prefetch = null;
+                try {
+                    max = pending.join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+                next = max - segmentSize;
+            }
+            if (prefetch == null && (max - next) * 2 <= segmentSize) {
+                prefetch = allocate(name);
+            }
+            return next++;
+        }
+    }
+
+    private static final class DatePart {
+
+        private final LocalDate date;
+        private final String text;
+
+        DatePart(LocalDate date) {
+            this.date = date;
+            this.text = date.format(DateTimeFormatter.BASIC_ISO_DATE);
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.yourcompany.erp.common.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置类
+ * erp.scheduling.enabled=false 时不启动任何定时任务（压测等场景）
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(prefix = "erp.scheduling", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,192 @@
+package com.yourcompany.erp.common.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.yourcompany.erp.common.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 幂等键存储（内存，按 TTL 过期清理，键数有上限）
+ * 同一个键的重复请求返回首次请求的结果；首次请求还在处理时，重复请求等待其完成
+ * 每个键只保存请求参数的 SHA-256 摘要和结果的精简形式（如订单ID），重复请求时再还原为完整结果
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${erp.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${erp.idempotency.wait-seconds:30}")
+    private long waitSeconds;
+
+    @Value("${erp.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    /** 按写入顺序排列，TTL 固定，所以也是过期顺序；读写都在 synchronized (entries) 内 */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private ObjectWriter fingerprintWriter;
+
+    @PostConstruct
+    public void init() {
+        // Map 按键排序，同样的参数总是序列化为同样的字节
+        fingerprintWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    }
+
+    /**
+     * 幂等执行
+     * @param key     幂等键（调用方负责按用户隔离）
+     * @param request 请求参数，同一个键携带不同参数视为错误
+     * @param action  实际业务操作
+     * @param compact 结果转为保存在幂等键中的精简形式
+     * @param restore 重复请求时由精简形式还原结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T, R> T execute(String key, Object request, Supplier<T> action,
+                            Function<T, R> compact, Function<R, T> restore) {
+        long now = System.currentTimeMillis();
+        byte[] fingerprint = fingerprint(request);
+
+        Entry created = new Entry(fingerprint, now + TimeUnit.MINUTES.toMillis(ttlMinutes));
+        Entry entry;
+        synchronized (entries) {
+            evictExpired(now);
+            entry = entries.get(key);
+            if (entry == null || entry.expiresAt < now) {
+                entries.remove(key);
+                makeRoom();
+                entries.put(key, created);
+                entry = created;
+            }
+        }
+
+        if (entry == created) {
+            try {
+                T result = action.get();
+                entry.result.complete(compact.apply(result));
+                return result;
+            } catch (RuntimeException e) {
+                // 失败不占用幂等键，客户端可以用同一个键重试
+                synchronized (entries) {
+                    entries.remove(key, entry);
+                }
+                entry.result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        if (!MessageDigest.isEqual(entry.fingerprint, fingerprint)) {
+            throw new BusinessException(422, "幂等键已被其他请求使用");
+        }
+        log.info("幂等键 {} 重复请求，返回首次结果", key);
+        R saved;
+        try {
+            saved = (R) entry.result.get(waitSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new BusinessException("请求处理失败，请重试");
+        } catch (TimeoutException e) {
+            throw new BusinessException(409, "请求正在处理中，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("请求处理失败，请重试");
+        }
+        return restore.apply(saved);
+    }
+
+    /**
+     * 定时清理过期的幂等键
+     */
+    @Scheduled(fixedDelayString = "${erp.idempotency.evict-interval-ms:60000}")
+    public void evictExpired() {
+        int evicted;
+        synchronized (entries) {
+            evicted = evictExpired(System.currentTimeMillis());
+        }
+        if (evicted > 0) {
+            log.debug("清理过期幂等键 {} 个", evicted);
+        }
+    }
+
+    /**
+     * 从最早写入的键开始清理已过期且已完成的键，遇到未过期的键即停止
+     */
+    private int evictExpired(long now) {
+        int evicted = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt >= now) {
+                break;
+            }
+            if (entry.result.isDone()) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * 键数达到上限时淘汰最早写入的已完成键；全部都在处理中时拒绝新键
+     */
+    private void makeRoom() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() >= maxEntries && it.hasNext()) {
+            if (it.next().result.isDone()) {
+                it.remove();
+            }
+        }
+        if (entries.size() >= maxEntries) {
+            throw new BusinessException(409, "处理中的请求过多，请稍后重试");
+        }
+    }
+
+    /**
+     * 请求参数指纹：序列化后的 SHA-256 摘要
+     */
+    private byte[] fingerprint(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(fingerprintWriter.writeValueAsBytes(request));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("无法计算请求指纹: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(byte[] fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.yourcompany.erp.common.money;
+
+/**
+ * 金额换算工具：业务计算统一使用 long 分（精确整数运算，无装箱），
+ * 只在接口 DTO / VO 边界与 Double 元互相转换
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * 元 -> 分（四舍五入到分，null 视为 0）
+     */
+    public static long toCents(Double yuan) {
+        return yuan == null ? 0L : toCents(yuan.doubleValue());
+    }
+
+    /**
+     * 元 -> 分（四舍五入到分）
+     */
+    public static long toCents(double yuan) {
+        return Math.round(yuan * 100);
+    }
+
+    /**
+     * 分 -> 元
+     */
+    public static double toYuan(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * 金额规整到分（null 保持 null）
+     */
+    public static Double round(Double yuan) {
+        return yuan == null ? null : toYuan(toCents(yuan));
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.yourcompany.erp.common.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * 金额字段转换器：实体中以 long 分保存，数据库列仍为元（float8），读出时四舍五入到分
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Long, Double> {
+
+    @Override
+    public Double convertToDatabaseColumn(Long cents) {
+        return cents == null ? null : Money.toYuan(cents);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(Double yuan) {
+        return yuan == null ? null : Money.toCents(yuan.doubleValue());
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.yourcompany.erp.common.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果（不统计总数，适合大表深翻页）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> content;      // 本页数据
+    private String nextCursor;    // 下一页游标（没有下一页时为 null）
+    private boolean hasMore;      // 是否还有下一页
+
+}
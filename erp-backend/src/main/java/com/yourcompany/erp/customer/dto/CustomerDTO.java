@@ -3,6 +3,7 @@ package com.yourcompany.erp.customer.dto;
 import com.yourcompany.erp.customer.entity.Customer;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 
 /**
@@ -29,6 +30,9 @@ public class CustomerDTO {
     private Double creditLimit;  // 信用额度
 	private Customer.CustomerStatus status; // 状态
 
+    @PositiveOrZero(message = "账期不能为负数")
+    private Integer paymentTermDays;  // 账期（天）
+
     // --- 改造点 2：添加 remark ---
     private String remark; // 备注
 
@@ -19,6 +19,7 @@ public class CustomerVO {
     private Customer.CustomerLevel level;
     private Double creditLimit;
     private Double balance;  // 当前欠款
+    private Integer paymentTermDays;  // 账期（天）
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
 	private Customer.CustomerStatus status;
@@ -1,5 +1,6 @@
 package com.yourcompany.erp.customer.entity;
 
+import com.yourcompany.erp.common.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
@@ -40,10 +41,19 @@ public class Customer {
     private CustomerLevel level = CustomerLevel.NORMAL;  // 客户等级
 
     @Column(name = "credit_limit", nullable = false)
-    private Double creditLimit = 0.0;  // 信用额度（简化版，固定值）
+    @Convert(converter = MoneyConverter.class)
+    private Long creditLimitCents = 0L;  // 信用额度（分，简化版，固定值）
 
-    @Column(nullable = false)
-    private Double balance = 0.0;  // 当前欠款余额
+    @Column(name = "balance", nullable = false, updatable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long balanceCents = 0L;  // 当前欠款余额（分，只由原子 UPDATE 维护，保存客户实体不会覆盖）
+
+    @Column(name = "credit_reserved", nullable = false, updatable = false, columnDefinition = "float8 default 0")
+    @Convert(converter = MoneyConverter.class)
+    private Long creditReservedCents = 0L;  // 已预占额度（分，已下单、尚未生成应收的订单金额，只由原子 UPDATE 维护）
+
+    @Column(name = "payment_term_days", nullable = false, columnDefinition = "integer default 30")
+    private Integer paymentTermDays = 30;  // 账期（天），应收到期日 = 生成日期 + 账期
 	
 
     @Column(nullable = false, length = 20)
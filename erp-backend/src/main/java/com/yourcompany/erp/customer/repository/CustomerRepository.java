@@ -4,6 +4,9 @@ import com.yourcompany.erp.customer.entity.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 // ⬇️ 添加这两行 import
 import java.util.List;
 import java.util.Optional;
@@ -32,4 +35,82 @@ public interface CustomerRepository extends JpaRepository<Customer, Long>, JpaSp
 	*/
 	List<Customer> findByLevel(Customer.CustomerLevel level);
 
+    /**
+     * 全部客户ID（按ID排序，批量任务分片用）
+     */
+    @Query("SELECT c.id FROM Customer c ORDER BY c.id")
+    List<Long> findAllIds();
+
+    /**
+     * 按增量调整客户欠款余额（原子更新，正数为新增应收，负数为收款核销，按 numeric 精确计算）
+     * @param deltaCents 增量（分）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE customer SET balance = CAST(CAST(balance AS numeric) + :deltaCents / 100.0 AS double precision) " +
+                   "WHERE id = :customerId",
+           nativeQuery = true)
+    int addBalance(@Param("customerId") Long customerId, @Param("deltaCents") long deltaCents);
+
+    /**
+     * 预占信用额度：欠款 + 已预占 + 本次金额不超过信用额度时才预占（一条条件 UPDATE，并发下单不会超额）
+     * @param amountCents 预占金额（分）
+     * @return 更新行数，0 表示客户不存在或额度不足（已加载的客户实体由调用方刷新）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE customer SET credit_reserved = CAST(CAST(credit_reserved AS numeric) + :amountCents / 100.0 AS double precision) " +
+                   "WHERE id = :customerId " +
+                   "AND CAST(balance AS numeric) + CAST(credit_reserved AS numeric) + :amountCents / 100.0 <= CAST(credit_limit AS numeric)",
+           nativeQuery = true)
+    int reserveCredit(@Param("customerId") Long customerId, @Param("amountCents") long amountCents);
+
+    /**
+     * 释放预占额度（订单取消时），不低于 0
+     * @param amountCents 释放金额（分）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE customer SET credit_reserved = " +
+                   "CAST(GREATEST(CAST(credit_reserved AS numeric) - :amountCents / 100.0, 0) AS double precision) " +
+                   "WHERE id = :customerId",
+           nativeQuery = true)
+    int releaseCredit(@Param("customerId") Long customerId, @Param("amountCents") long amountCents);
+
+    /**
+     * 预占转为欠款（生成应收时）：欠款增加、预占减少，一条语句完成
+     * 预占不低于 0（兼容启用预占前登记的事件）
+     * @param amountCents 金额（分）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE customer SET balance = CAST(CAST(balance AS numeric) + :amountCents / 100.0 AS double precision), " +
+                   "credit_reserved = CAST(GREATEST(CAST(credit_reserved AS numeric) - :amountCents / 100.0, 0) AS double precision) " +
+                   "WHERE id = :customerId",
+           nativeQuery = true)
+    int settleReservedCredit(@Param("customerId") Long customerId, @Param("amountCents") long amountCents);
+
+    /**
+     * 按应收明细重算单个客户欠款余额，按待投递事件重算预占额度（修复用，numeric 累加避免浮点尾差）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE customer c SET balance = " +
+                   "(SELECT CAST(COALESCE(SUM(CAST(r.amount AS numeric) - CAST(r.paid_amount AS numeric)), 0) AS double precision) " +
+                   "FROM receivable r WHERE r.customer_id = c.id AND r.status <> 'PAID'), " +
+                   "credit_reserved = " +
+                   "(SELECT CAST(COALESCE(SUM(CAST(o.amount AS numeric)), 0) AS double precision) " +
+                   "FROM finance_outbox o WHERE o.customer_id = c.id AND o.status = 'PENDING' AND o.event_type = 'RECEIVABLE_CREATE') " +
+                   "WHERE c.id = :customerId",
+           nativeQuery = true)
+    int recalculateBalance(@Param("customerId") Long customerId);
+
+    /**
+     * 按应收明细重算全部客户欠款余额，按待投递事件重算预占额度（修复用）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE customer c SET balance = " +
+                   "(SELECT CAST(COALESCE(SUM(CAST(r.amount AS numeric) - CAST(r.paid_amount AS numeric)), 0) AS double precision) " +
+                   "FROM receivable r WHERE r.customer_id = c.id AND r.status <> 'PAID'), " +
+                   "credit_reserved = " +
+                   "(SELECT CAST(COALESCE(SUM(CAST(o.amount AS numeric)), 0) AS double precision) " +
+                   "FROM finance_outbox o WHERE o.customer_id = c.id AND o.status = 'PENDING' AND o.event_type = 'RECEIVABLE_CREATE')",
+           nativeQuery = true)
+    int recalculateAllBalances();
+
 }
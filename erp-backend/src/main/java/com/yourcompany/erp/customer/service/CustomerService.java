@@ -1,6 +1,7 @@
 package com.yourcompany.erp.customer.service;
 
 import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.money.Money;
 import com.yourcompany.erp.customer.dto.CustomerDTO;
 import com.yourcompany.erp.customer.dto.CustomerVO;
 import com.yourcompany.erp.customer.entity.Customer;
@@ -48,10 +49,11 @@ public class CustomerService {
         if (customer.getLevel() == null) {
             customer.setLevel(Customer.CustomerLevel.NORMAL);
         }
-        if (customer.getCreditLimit() == null) {
-            customer.setCreditLimit(5000.0);  // 默认信用额度 5000
+        // 默认信用额度 5000 元
+        customer.setCreditLimitCents(dto.getCreditLimit() != null ? Money.toCents(dto.getCreditLimit()) : 500000L);
+        if (customer.getPaymentTermDays() == null) {
+            customer.setPaymentTermDays(30);  // 默认账期 30 天
         }
-        customer.setBalance(0.0);
 
         customer = customerRepository.save(customer);
         log.info("客户 {} 创建成功，ID: {}", customer.getName(), customer.getId());
@@ -90,7 +92,8 @@ public class CustomerService {
         if (dto.getPhone() != null) customer.setPhone(dto.getPhone());
         if (dto.getAddress() != null) customer.setAddress(dto.getAddress());
         if (dto.getLevel() != null) customer.setLevel(dto.getLevel());
-        if (dto.getCreditLimit() != null) customer.setCreditLimit(dto.getCreditLimit());
+        if (dto.getCreditLimit() != null) customer.setCreditLimitCents(Money.toCents(dto.getCreditLimit()));
+        if (dto.getPaymentTermDays() != null) customer.setPaymentTermDays(dto.getPaymentTermDays());
         // 增加对 email, remark, status 的更新
         if (dto.getEmail() != null) customer.setEmail(dto.getEmail());
         if (dto.getRemark() != null) customer.setRemark(dto.getRemark());
@@ -110,10 +113,15 @@ public class CustomerService {
                 .orElseThrow(() -> new BusinessException("客户不存在"));
 
         // 检查是否有未结清的欠款
-        if (customer.getBalance() > 0) {
+        if (customer.getBalanceCents() > 0) {
             throw new BusinessException("客户还有未结清欠款，无法删除");
         }
 
+        // 检查是否有尚未生成应收的订单预占额度
+        if (customer.getCreditReservedCents() > 0) {
+            throw new BusinessException("客户还有未入账的订单，无法删除");
+        }
+
         customerRepository.delete(customer);
         log.info("客户 {} 已删除", customer.getName());
     }
@@ -211,8 +219,11 @@ public class CustomerService {
         CustomerVO vo = new CustomerVO();
         BeanUtils.copyProperties(customer, vo);
         
-        // 计算可用额度
-        vo.setAvailableCredit(customer.getCreditLimit() - customer.getBalance());
+        // 金额以分保存，转换为元；可用额度按分计算（扣除欠款和下单预占）
+        vo.setCreditLimit(Money.toYuan(customer.getCreditLimitCents()));
+        vo.setBalance(Money.toYuan(customer.getBalanceCents()));
+        vo.setAvailableCredit(Money.toYuan(customer.getCreditLimitCents() - customer.getBalanceCents()
+                - customer.getCreditReservedCents()));
         
         return vo;
     }
@@ -1,17 +1,31 @@
 package com.yourcompany.erp.finance.controller;
 
+import com.yourcompany.erp.common.exception.BusinessException;
 import com.yourcompany.erp.common.response.Result;
 import com.yourcompany.erp.finance.dto.*;
+import com.yourcompany.erp.finance.service.BankImportService;
 import com.yourcompany.erp.finance.service.FinanceService;
+import com.yourcompany.erp.finance.service.OverdueScanService;
+import com.yourcompany.erp.finance.service.OverdueScanner;
+import com.yourcompany.erp.finance.service.PeriodCloseService;
+import com.yourcompany.erp.finance.service.StatementJobService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 /**
@@ -26,6 +40,21 @@ public class AdminFinanceController {
     @Autowired
     private FinanceService financeService;
 
+    @Autowired
+    private PeriodCloseService periodCloseService;
+
+    @Autowired
+    private StatementJobService statementJobService;
+
+    @Autowired
+    private BankImportService bankImportService;
+
+    @Autowired
+    private OverdueScanner overdueScanner;
+
+    @Autowired
+    private OverdueScanService overdueScanService;
+
     /**
      * 获取应收账款列表（分页）
      */
@@ -81,6 +110,47 @@ public class AdminFinanceController {
         return Result.success(vo);
     }
 
+    /**
+     * 自动核销
+     */
+    @PostMapping("/payment/auto")
+	@Operation(summary = "自动核销", description = "按应收先后顺序（先进先出）核销收款；dryRun=true 时只返回核销方案不入账")
+    public Result<PaymentAllocationPlanVO> autoAllocatePayment(@Valid @RequestBody PaymentAutoDTO dto) {
+        log.info("自动核销，客户: {}, 金额: {}, 试算: {}", dto.getCustomerId(), dto.getAmount(), dto.isDryRun());
+        PaymentAllocationPlanVO plan = financeService.autoAllocatePayment(dto);
+        return Result.success(plan);
+    }
+
+    /**
+     * 导入银行流水
+     */
+    @PostMapping("/bank-import")
+	@Operation(summary = "导入银行流水", description = "逐行匹配银行导出的 CSV 流水（按摘要中的订单号、电话、金额），返回核销建议，不入账")
+	@Parameter(name = "charset", description = "文件编码（默认 UTF-8，网银导出常为 GBK）")
+    public Result<BankImportResultVO> importBankStatement(@RequestParam("file") MultipartFile file,
+                                                          @RequestParam(defaultValue = "UTF-8") String charset) throws IOException {
+        log.info("导入银行流水: {}, 大小: {}", file.getOriginalFilename(), file.getSize());
+        Charset fileCharset;
+        try {
+            fileCharset = Charset.forName(charset);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(400, "不支持的文件编码: " + charset);
+        }
+        try (Reader reader = new InputStreamReader(file.getInputStream(), fileCharset)) {
+            return Result.success(bankImportService.match(reader));
+        }
+    }
+
+    /**
+     * 银行流水确认入账
+     */
+    @PostMapping("/bank-import/confirm")
+	@Operation(summary = "银行流水确认入账", description = "提交导入结果中的入账请求，按批核销入账；返回成功数和失败明细")
+    public Result<BankImportConfirmVO> confirmBankImport(@Valid @RequestBody BankImportConfirmDTO dto) {
+        log.info("银行流水确认入账，共 {} 笔", dto.getPayments().size());
+        return Result.success(bankImportService.confirm(dto.getPayments()));
+    }
+
     /**
      * 获取收款记录列表
      */
@@ -105,13 +175,37 @@ public class AdminFinanceController {
      * 账龄分析
      */
     @GetMapping("/age/customer/{customerId}")
-	@Operation(summary = "账龄分析", description = "分析客户应收账款的账龄分布（15天、30天、60天、60天以上）")
-    public Result<ReceivableAgeVO> analyzeReceivableAge(@PathVariable Long customerId) {
-        log.info("查询客户 {} 账龄分析", customerId);
-        ReceivableAgeVO vo = financeService.analyzeReceivableAge(customerId);
+	@Operation(summary = "账龄分析", description = "按逾期天数分析客户应收账款的账龄分布（未到期及15天内、30天、60天、60天以上）；指定日期时按客户明细账回放历史账龄")
+	@Parameter(name = "asOf", description = "历史日期 yyyy-MM-dd（可选，取该日零点的账龄）")
+    public Result<ReceivableAgeVO> analyzeReceivableAge(
+            @PathVariable Long customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        log.info("查询客户 {} 账龄分析，日期: {}", customerId, asOf);
+        ReceivableAgeVO vo = asOf == null
+                ? financeService.analyzeReceivableAge(customerId)
+                : financeService.analyzeReceivableAgeAt(customerId, asOf);
         return Result.success(vo);
     }
 
+    /**
+     * 全部客户账龄矩阵
+     */
+    @GetMapping("/age")
+	@Operation(summary = "客户账龄矩阵", description = "一次查询全部（或指定）客户的账龄分布，按指定账龄段金额降序")
+	@Parameter(name = "customerIds", description = "客户 ID 列表（可选，逗号分隔）")
+	@Parameter(name = "level", description = "客户等级（可选）：NORMAL / VIP")
+	@Parameter(name = "sortBy", description = "排序字段：total / within15 / within30 / within60 / over60（默认）")
+	@Parameter(name = "limit", description = "返回条数上限，默认 100")
+    public Result<List<ReceivableAgeVO>> analyzeReceivableAgeMatrix(
+            @RequestParam(required = false) List<Long> customerIds,
+            @RequestParam(required = false) String level,
+            @RequestParam(defaultValue = "over60") String sortBy,
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("查询客户账龄矩阵，排序: {}", sortBy);
+        List<ReceivableAgeVO> list = financeService.analyzeReceivableAgeMatrix(customerIds, level, sortBy, Math.min(limit, 1000));
+        return Result.success(list);
+    }
+
     /**
      * 生成月度对账单
      */
@@ -129,4 +223,85 @@ public class AdminFinanceController {
         return Result.success(vo);
     }
 
+    /**
+     * 重算客户欠款余额
+     */
+    @PostMapping("/balance/repair")
+	@Operation(summary = "重算客户欠款余额", description = "按应收明细全量重算欠款余额，仅用于数据修复；不传客户 ID 时重算全部客户")
+	@Parameter(name = "customerId", description = "客户 ID（可选）")
+    public Result<Integer> repairCustomerBalance(@RequestParam(required = false) Long customerId) {
+        log.info("重算客户欠款余额，客户: {}", customerId);
+        return Result.success(financeService.repairCustomerBalance(customerId));
+    }
+
+    /**
+     * 补记客户明细账
+     */
+    @PostMapping("/ledger/backfill")
+	@Operation(summary = "补记客户明细账", description = "为明细账启用前的应收、收款和核销补记分录，可重复执行")
+    public Result<Integer> backfillLedger() {
+        log.info("补记客户明细账");
+        return Result.success(financeService.backfillLedger());
+    }
+
+    /**
+     * 执行逾期扫描
+     */
+    @PostMapping("/overdue/scan")
+	@Operation(summary = "执行逾期扫描", description = "分批扫描未收应收：补齐到期日、标记新逾期、计提滞纳金；中断后从断点继续。系统也会定时自动扫描")
+	@Parameter(name = "asOf", description = "业务日期（yyyy-MM-dd），不传为今天，不能晚于今天")
+    public Result<OverdueScanVO> scanOverdue(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        LocalDate today = LocalDate.now();
+        if (asOf != null && asOf.isAfter(today)) {
+            // 未来日期会提前标记逾期、多计滞纳金，且当天的扫描断点会被占用
+            throw new BusinessException(400, "业务日期不能晚于今天");
+        }
+        LocalDate date = asOf != null ? asOf : today;
+        log.info("逾期扫描，业务日期: {}", date);
+        return Result.success(overdueScanner.scan(date));
+    }
+
+    /**
+     * 查询逾期扫描进度
+     */
+    @GetMapping("/overdue/scan")
+	@Operation(summary = "查询逾期扫描进度", description = "返回当前一轮扫描的业务日期、断点和统计")
+    public Result<OverdueScanVO> getOverdueScanProgress() {
+        return Result.success(overdueScanService.getProgress());
+    }
+
+    /**
+     * 月结
+     */
+    @PostMapping("/period-close")
+	@Operation(summary = "月结", description = "生成指定月份全部客户的月末余额快照，对账单期初余额直接取快照；每月初也会自动月结上月")
+	@Parameter(name = "year", description = "年份（如 2025）")
+	@Parameter(name = "month", description = "月份（1-12）")
+    public Result<Integer> closePeriod(@RequestParam int year, @RequestParam int month) {
+        log.info("月结 {}-{}", year, month);
+        return Result.success(periodCloseService.closePeriod(YearMonth.of(year, month)));
+    }
+
+    /**
+     * 启动批量对账单任务
+     */
+    @PostMapping("/statement-job")
+	@Operation(summary = "批量生成对账单", description = "后台并行生成全部客户指定月份的对账单，写入 zip 归档；返回任务 ID 用于查询进度")
+	@Parameter(name = "year", description = "年份（如 2025）")
+	@Parameter(name = "month", description = "月份（1-12）")
+    public Result<StatementJobVO> startStatementJob(@RequestParam int year, @RequestParam int month) {
+        log.info("启动批量对账单任务 {}-{}", year, month);
+        return Result.success(statementJobService.start(YearMonth.of(year, month)));
+    }
+
+    /**
+     * 查询批量对账单任务进度
+     */
+    @GetMapping("/statement-job/{jobId}")
+	@Operation(summary = "查询批量对账单任务进度", description = "返回已处理客户数、写出份数、失败数和输出文件")
+    public Result<StatementJobVO> getStatementJob(@PathVariable String jobId) {
+        return Result.success(statementJobService.getJob(jobId));
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.yourcompany.erp.finance.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 银行流水确认入账请求 DTO（提交匹配结果中的入账请求）
+ */
+@Data
+public class BankImportConfirmDTO {
+
+    @NotEmpty(message = "入账明细不能为空")
+    @Valid
+    private List<PaymentBatchDTO> payments;
+
+}
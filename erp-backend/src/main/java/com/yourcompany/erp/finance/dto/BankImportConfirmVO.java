@@ -0,0 +1,31 @@
+package com.yourcompany.erp.finance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 银行流水确认入账结果 VO
+ */
+@Data
+public class BankImportConfirmVO {
+
+    private int succeeded;  // 入账成功的收款数
+    private List<Integer> duplicates = new ArrayList<>();  // 流水已入账过而跳过的收款在提交列表中的位置
+    private List<Failure> failures = new ArrayList<>();
+
+    /**
+     * 入账失败的收款
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+        private int index;       // 在提交列表中的位置（从0开始）
+        private String message;  // 失败原因
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.yourcompany.erp.finance.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 银行流水导入匹配结果 VO（只给出核销建议，确认后再入账）
+ */
+@Data
+public class BankImportResultVO {
+
+    private int totalLines;      // 收入流水行数（不含表头、支出和空行）
+    private int skippedLines;    // 跳过的行数（支出、金额无法解析）
+    private int matchedLines;    // 可直接确认入账的行数
+    private int partialLines;    // 识别出客户但未能全额核销的行数（需人工处理）
+    private int unmatchedLines;  // 未识别的行数
+    private int postedLines;     // 已入账过的行数（重复导入，不再给出入账请求）
+
+    private List<Line> lines = new ArrayList<>();
+
+    /**
+     * 单行流水的匹配结果
+     */
+    @Data
+    public static class Line {
+        private int lineNo;               // 文件中的行号（表头为第1行）
+        private String bankRef;           // 流水标识（流水号或整行内容的摘要），用于防止重复入账
+        private boolean posted;           // 该流水已入账过
+        private String tradeDate;         // 交易日期（原样）
+        private Double amount;            // 收入金额
+        private String payerName;         // 对方户名
+        private String phone;             // 电话
+        private String reference;         // 摘要/附言
+        private String matchedBy;         // 匹配依据：ORDER_NO / PHONE / AMOUNT / NONE
+        private Long customerId;
+        private String customerName;
+        private Double unallocatedAmount; // 未能核销的金额
+        private List<PaymentAllocationPlanVO.AllocationLine> allocations = new ArrayList<>();
+        private PaymentBatchDTO payment;  // 全额核销时给出的入账请求，确认时原样提交
+    }
+
+}
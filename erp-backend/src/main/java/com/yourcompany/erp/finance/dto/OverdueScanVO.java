@@ -0,0 +1,22 @@
+package com.yourcompany.erp.finance.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 逾期扫描进度 VO
+ */
+@Data
+public class OverdueScanVO {
+
+    private LocalDate scanDate;       // 本轮扫描的业务日期
+    private Long lastReceivableId;    // 已处理到的应收ID（断点）
+    private boolean finished;         // 本轮是否已扫描完
+    private long scanned;             // 已扫描的未收应收数
+    private long newlyOverdue;        // 新标记逾期数
+    private long lateFeeAccrued;      // 计提滞纳金的应收数
+    private LocalDateTime updateTime; // 最近一次推进时间
+
+}
@@ -0,0 +1,40 @@
+package com.yourcompany.erp.finance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 自动核销方案 VO
+ */
+@Data
+public class PaymentAllocationPlanVO {
+
+    private Long customerId;
+    private Double amount;                 // 收款金额
+    private Double allocatedAmount = 0.0;  // 核销金额
+    private Double unallocatedAmount = 0.0; // 未核销金额（超出未收总额的部分）
+    private boolean dryRun;
+    private PaymentVO payment;             // 入账后的收款记录（试算时为空）
+
+    private List<AllocationLine> allocations = new ArrayList<>();
+
+    /**
+     * 核销方案明细
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AllocationLine {
+        private Long receivableId;
+        private String orderNo;
+        private LocalDateTime createTime;
+        private Double unpaidAmount;  // 核销前未收金额
+        private Double amount;        // 本次核销金额
+    }
+
+}
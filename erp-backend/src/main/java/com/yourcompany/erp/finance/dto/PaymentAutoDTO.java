@@ -0,0 +1,26 @@
+package com.yourcompany.erp.finance.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+/**
+ * 自动核销请求 DTO（按应收先后顺序核销）
+ */
+@Data
+public class PaymentAutoDTO {
+
+    @NotNull(message = "客户ID不能为空")
+    private Long customerId;
+
+    @NotNull(message = "收款金额不能为空")
+    @Positive(message = "收款金额必须大于0")
+    private Double amount;
+
+    private String paymentMethod;  // 支付方式
+
+    private String remark;  // 备注
+
+    private boolean dryRun;  // 只返回核销方案，不入账
+
+}
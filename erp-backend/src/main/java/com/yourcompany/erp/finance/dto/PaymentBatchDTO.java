@@ -24,6 +24,8 @@ public class PaymentBatchDTO {
 
     private String remark;  // 备注
 
+    private String bankRef;  // 银行流水标识（银行流水导入时带出，同一流水只能入账一次）
+
     @NotEmpty(message = "核销明细不能为空")
     private List<AllocationItem> allocations;  // 核销明细
 
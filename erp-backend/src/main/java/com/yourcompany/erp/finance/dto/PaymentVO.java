@@ -3,6 +3,7 @@ package com.yourcompany.erp.finance.dto;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 收款记录响应 VO
@@ -15,7 +16,8 @@ public class PaymentVO {
     private Long customerId;
     private String customerName;  // 客户名称（冗余）
     private Long receivableId;
-    private String orderNo;  // 订单编号（冗余）
+    private String orderNo;  // 订单编号（冗余，批量核销时为第一个）
+    private List<String> orderNos;  // 本次收款核销的全部订单编号
     private Double amount;
     private String paymentMethod;
     private String remark;
@@ -1,5 +1,6 @@
 package com.yourcompany.erp.finance.dto;
 
+import com.yourcompany.erp.common.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -24,10 +25,14 @@ public class ReceivableAgeVO {
     private Double totalUnpaid = 0.0;    // 未收总额
 
     /**
-     * 计算总额
+     * 按分设置各账龄段金额并计算总额
      */
-    public void calculateTotal() {
-        this.totalUnpaid = within15Days + within30Days + within60Days + over60Days;
+    public void setCents(long within15Cents, long within30Cents, long within60Cents, long over60Cents) {
+        this.within15Days = Money.toYuan(within15Cents);
+        this.within30Days = Money.toYuan(within30Cents);
+        this.within60Days = Money.toYuan(within60Cents);
+        this.over60Days = Money.toYuan(over60Cents);
+        this.totalUnpaid = Money.toYuan(within15Cents + within30Cents + within60Cents + over60Cents);
     }
 
 }
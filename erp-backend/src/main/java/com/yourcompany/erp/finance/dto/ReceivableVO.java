@@ -1,14 +1,18 @@
 package com.yourcompany.erp.finance.dto;
 
+import com.yourcompany.erp.common.money.Money;
 import com.yourcompany.erp.finance.entity.Receivable;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 /**
  * 应收账款响应 VO
  */
 @Data
+@NoArgsConstructor
 public class ReceivableVO {
 
     private Long id;
@@ -20,7 +24,33 @@ public class ReceivableVO {
     private Double paidAmount;
     private Double unpaidAmount;  // 未收金额（计算字段）
     private Receivable.ReceivableStatus status;
+    private LocalDate dueDate;  // 到期日
+    private LocalDateTime overdueTime;  // 标记逾期的时间（未逾期为空）
+    private Double lateFee;  // 已计提滞纳金
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
 
+    /**
+     * 投影查询构造（订单编号、客户名称由关联查询带出，金额以分传入）
+     */
+    public ReceivableVO(Long id, Long orderId, String orderNo, Long customerId, String customerName,
+                        Long amountCents, Long paidAmountCents, Receivable.ReceivableStatus status,
+                        LocalDate dueDate, LocalDateTime overdueTime, Long lateFeeCents,
+                        LocalDateTime createTime, LocalDateTime updateTime) {
+        this.id = id;
+        this.orderId = orderId;
+        this.orderNo = orderNo;
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.amount = Money.toYuan(amountCents);
+        this.paidAmount = Money.toYuan(paidAmountCents);
+        this.unpaidAmount = Money.toYuan(amountCents - paidAmountCents);
+        this.status = status;
+        this.dueDate = dueDate;
+        this.overdueTime = overdueTime;
+        this.lateFee = Money.toYuan(lateFeeCents);
+        this.createTime = createTime;
+        this.updateTime = updateTime;
+    }
+
 }
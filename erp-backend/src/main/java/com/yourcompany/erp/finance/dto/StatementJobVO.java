@@ -0,0 +1,25 @@
+package com.yourcompany.erp.finance.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量对账单任务进度 VO
+ */
+@Data
+public class StatementJobVO {
+
+    private String jobId;
+    private String period;          // 账期（yyyy-MM）
+    private String status;          // RUNNING / DONE / FAILED
+    private int totalCustomers;     // 客户总数
+    private int processedCustomers; // 已处理客户数
+    private int writtenStatements;  // 已写出的对账单数（无期初余额且无发生额的客户不写出）
+    private int failedCustomers;    // 生成失败的客户数
+    private String outputFile;      // 输出归档文件
+    private String errorMessage;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+
+}
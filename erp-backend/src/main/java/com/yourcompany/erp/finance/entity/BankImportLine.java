@@ -0,0 +1,26 @@
+package com.yourcompany.erp.finance.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 已入账的银行流水（流水标识为主键，同一笔流水只能入账一次）
+ */
+@Data
+@Entity
+@Table(name = "bank_import_line")
+public class BankImportLine {
+
+    @Id
+    @Column(name = "bank_ref", length = 64)
+    private String bankRef;  // 流水标识（流水号或整行内容的 SHA-256）
+
+    @Column(name = "payment_id", nullable = false)
+    private Long paymentId;  // 入账生成的收款记录ID
+
+    @Column(name = "create_time", nullable = false)
+    private LocalDateTime createTime;
+
+}
@@ -0,0 +1,37 @@
+package com.yourcompany.erp.finance.entity;
+
+import com.yourcompany.erp.common.money.MoneyConverter;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 客户月末余额快照表（月结生成，对账单期初余额直接取上月快照）
+ */
+@Data
+@Entity
+@Table(name = "customer_balance_snapshot", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_balance_snapshot_customer_period", columnNames = {"customer_id", "period_start"})
+})
+public class CustomerBalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;  // 客户ID
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;  // 账期（当月1日）
+
+    @Column(name = "closing_balance", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long closingBalanceCents;  // 期末余额（分，累计应收 - 累计收款）
+
+    @Column(name = "create_time", nullable = false)
+    private LocalDateTime createTime;  // 月结时间
+
+}
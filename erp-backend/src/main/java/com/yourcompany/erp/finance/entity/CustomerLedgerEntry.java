@@ -0,0 +1,65 @@
+package com.yourcompany.erp.finance.entity;
+
+import com.yourcompany.erp.common.money.MoneyConverter;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * 客户明细账（只追加）：销售、收款、核销、作废按客户顺序号记账
+ * 余额、对账单、历史账龄都由 月末快照 + 快照之后的少量分录 得出
+ */
+@Data
+@Entity
+@Immutable
+@Table(name = "customer_ledger", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_customer_ledger_seq", columnNames = {"customer_id", "seq"})
+}, indexes = {
+        @Index(name = "idx_customer_ledger_time", columnList = "customer_id, entry_time")
+})
+public class CustomerLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;  // 客户ID
+
+    @Column(nullable = false)
+    private Long seq;  // 客户内顺序号（从1连续递增）
+
+    @Column(name = "entry_type", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private EntryType entryType;  // 分录类型
+
+    @Column(name = "ref_id", nullable = false)
+    private Long refId;  // 销售/核销/作废为应收ID，收款为收款ID
+
+    @Column(name = "ref_no", length = 50)
+    private String refNo;  // 订单编号或收款单号
+
+    @Column(name = "amount", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long amountCents;  // 金额（分，正数）
+
+    @Column(name = "balance_delta", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long balanceDeltaCents;  // 对往来余额的影响（分，销售为正，收款、作废为负，核销为0）
+
+    @Column(name = "entry_time", nullable = false)
+    private LocalDateTime entryTime;  // 业务发生时间
+
+    /**
+     * 分录类型枚举
+     */
+    public enum EntryType {
+        SALE,        // 销售（生成应收）
+        PAYMENT,     // 收款
+        ALLOCATION,  // 核销（收款分配到应收，不影响往来余额）
+        VOID         // 作废应收（订单取消）
+    }
+
+}
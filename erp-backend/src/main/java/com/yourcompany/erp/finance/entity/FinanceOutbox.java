@@ -0,0 +1,73 @@
+package com.yourcompany.erp.finance.entity;
+
+import com.yourcompany.erp.common.money.MoneyConverter;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * 财务出箱事件表（与订单同一事务写入，由后台批量投递）
+ */
+@Data
+@Entity
+@Table(name = "finance_outbox", indexes = {
+        @Index(name = "idx_finance_outbox_status", columnList = "status, id"),
+        @Index(name = "idx_finance_outbox_customer", columnList = "customer_id, status"),
+        @Index(name = "idx_finance_outbox_order", columnList = "order_id")
+})
+public class FinanceOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_type", nullable = false, length = 30)
+    @Enumerated(EnumType.STRING)
+    private EventType eventType;  // 事件类型
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;  // 订单ID
+
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;  // 客户ID
+
+    @Column(name = "amount", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long amountCents;  // 金额（分）
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private OutboxStatus status = OutboxStatus.PENDING;  // 投递状态
+
+    @Column(nullable = false)
+    private Integer attempts = 0;  // 失败次数
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;  // 最近一次失败原因
+
+    @CreationTimestamp
+    @Column(name = "create_time", updatable = false)
+    private LocalDateTime createTime;
+
+    @Column(name = "processed_time")
+    private LocalDateTime processedTime;  // 投递完成时间
+
+    /**
+     * 事件类型枚举
+     */
+    public enum EventType {
+        RECEIVABLE_CREATE   // 生成应收
+    }
+
+    /**
+     * 投递状态枚举
+     */
+    public enum OutboxStatus {
+        PENDING,    // 待投递
+        DONE,       // 已投递
+        FAILED      // 多次失败，需人工处理
+    }
+
+}
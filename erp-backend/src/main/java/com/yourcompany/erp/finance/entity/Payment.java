@@ -1,5 +1,6 @@
 package com.yourcompany.erp.finance.entity;
 
+import com.yourcompany.erp.common.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
@@ -11,7 +12,9 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "payment")
+@Table(name = "payment", indexes = {
+        @Index(name = "idx_payment_customer_time", columnList = "customer_id, create_time")
+})
 public class Payment {
 
     @Id
@@ -24,11 +27,13 @@ public class Payment {
     @Column(name = "customer_id", nullable = false)
     private Long customerId;  // 客户ID
 
-    @Column(nullable = false)
-    private Double amount;  // 收款总金额
+    @Column(name = "amount", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long amountCents;  // 收款总金额（分）
 
     @Column(name = "allocated_amount", nullable = false)
-    private Double allocatedAmount = 0.0;  // 已分配金额（用于部分核销）
+    @Convert(converter = MoneyConverter.class)
+    private Long allocatedAmountCents = 0L;  // 已分配金额（分，用于部分核销）
 
     @Column(name = "payment_method", length = 20)
     private String paymentMethod;  // 支付方式（现金、转账、支票等）
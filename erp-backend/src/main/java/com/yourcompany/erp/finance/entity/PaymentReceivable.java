@@ -1,5 +1,6 @@
 package com.yourcompany.erp.finance.entity;
 
+import com.yourcompany.erp.common.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -21,7 +22,8 @@ public class PaymentReceivable {
     @Column(name = "receivable_id", nullable = false)
     private Long receivableId;  // 应收账款ID
 
-    @Column(nullable = false)
-    private Double amount;  // 本次核销金额
+    @Column(name = "amount", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long amountCents;  // 本次核销金额（分）
 
 }
@@ -1,10 +1,12 @@
 package com.yourcompany.erp.finance.entity;
 
+import com.yourcompany.erp.common.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 /**
@@ -12,7 +14,12 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "receivable")
+@Table(name = "receivable", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_receivable_order_id", columnNames = "order_id")  // 一个订单只生成一笔应收
+}, indexes = {
+        @Index(name = "idx_receivable_customer_time", columnList = "customer_id, create_time"),
+        @Index(name = "idx_receivable_status_id", columnList = "status, id")  // 逾期扫描按 ID 分批遍历未收应收
+})
 public class Receivable {
 
     @Id
@@ -25,16 +32,31 @@ public class Receivable {
     @Column(name = "customer_id", nullable = false)
     private Long customerId;  // 客户ID
 
-    @Column(nullable = false)
-    private Double amount;  // 应收金额
+    @Column(name = "amount", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long amountCents;  // 应收金额（分）
 
     @Column(name = "paid_amount", nullable = false)
-    private Double paidAmount = 0.0;  // 已收金额
+    @Convert(converter = MoneyConverter.class)
+    private Long paidAmountCents = 0L;  // 已收金额（分）
 
     @Column(nullable = false, length = 20)
     @Enumerated(EnumType.STRING)
     private ReceivableStatus status = ReceivableStatus.UNPAID;  // 状态
 
+    @Column(name = "due_date")
+    private LocalDate dueDate;  // 到期日（生成日期 + 客户账期；早期数据为空，由逾期扫描补齐）
+
+    @Column(name = "overdue_time")
+    private LocalDateTime overdueTime;  // 首次被扫描标记为逾期的时间
+
+    @Column(name = "late_fee", nullable = false, columnDefinition = "float8 default 0")
+    @Convert(converter = MoneyConverter.class)
+    private Long lateFeeCents = 0L;  // 已计提滞纳金（分）
+
+    @Column(name = "late_fee_date")
+    private LocalDate lateFeeDate;  // 滞纳金已计提到的日期
+
     @CreationTimestamp
     @Column(name = "create_time", updatable = false)
     private LocalDateTime createTime;
@@ -0,0 +1,44 @@
+package com.yourcompany.erp.finance.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 扫描任务断点表（分批扫描每提交一批记录一次进度，重启后从断点继续）
+ */
+@Data
+@Entity
+@Table(name = "scan_checkpoint")
+public class ScanCheckpoint {
+
+    @Id
+    @Column(length = 50)
+    private String name;  // 任务名
+
+    @Column(name = "scan_date")
+    private LocalDate scanDate;  // 本轮扫描的业务日期
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId = 0L;  // 本轮已处理到的最大记录ID
+
+    @Column(nullable = false)
+    private Boolean finished = false;  // 本轮是否已扫描完
+
+    @Column(nullable = false)
+    private Long scanned = 0L;  // 本轮已扫描记录数
+
+    @Column(name = "newly_overdue", nullable = false)
+    private Long newlyOverdue = 0L;  // 本轮新标记逾期数
+
+    @Column(name = "late_fee_accrued", nullable = false)
+    private Long lateFeeAccrued = 0L;  // 本轮计提滞纳金的记录数
+
+    @UpdateTimestamp
+    @Column(name = "update_time")
+    private LocalDateTime updateTime;
+
+}
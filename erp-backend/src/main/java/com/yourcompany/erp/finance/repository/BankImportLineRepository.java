@@ -0,0 +1,31 @@
+package com.yourcompany.erp.finance.repository;
+
+import com.yourcompany.erp.finance.entity.BankImportLine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Set;
+
+@Repository
+public interface BankImportLineRepository extends JpaRepository<BankImportLine, String> {
+
+    /**
+     * 登记已入账的流水，流水已登记时不插入并返回 0（并发确认同一流水时后提交的一方等待后返回 0）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO bank_import_line (bank_ref, payment_id, create_time) " +
+                   "VALUES (:bankRef, :paymentId, now()) ON CONFLICT (bank_ref) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("bankRef") String bankRef, @Param("paymentId") Long paymentId);
+
+    /**
+     * 一批流水标识中已入账的部分
+     */
+    @Query(value = "SELECT bank_ref FROM bank_import_line WHERE bank_ref = ANY(CAST(:bankRefs AS varchar[]))",
+           nativeQuery = true)
+    Set<String> findPostedRefs(@Param("bankRefs") String[] bankRefs);
+
+}
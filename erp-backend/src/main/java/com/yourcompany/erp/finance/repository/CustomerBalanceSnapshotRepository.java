@@ -0,0 +1,80 @@
+package com.yourcompany.erp.finance.repository;
+
+import com.yourcompany.erp.finance.entity.CustomerBalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CustomerBalanceSnapshotRepository extends JpaRepository<CustomerBalanceSnapshot, Long> {
+
+    /**
+     * 查询客户账期不晚于指定日期的最近一次月末快照
+     */
+    Optional<CustomerBalanceSnapshot> findTopByCustomerIdAndPeriodStartLessThanEqualOrderByPeriodStartDesc(
+            Long customerId, LocalDate periodStart);
+
+    /**
+     * 月结：为全部客户生成（或覆盖）指定账期的期末余额快照
+     * 每个客户从其上一次快照出发，只累加上次快照之后到本期末的明细账分录
+     * @return 生成的快照数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO customer_balance_snapshot (customer_id, period_start, closing_balance, create_time) " +
+                   "SELECT c.id, :periodStart, " +
+                   "  CAST(COALESCE(CAST(s.closing_balance AS numeric), 0) " +
+                   "  + COALESCE((SELECT SUM(CAST(l.balance_delta AS numeric)) FROM customer_ledger l WHERE l.customer_id = c.id " +
+                   "      AND l.entry_time >= COALESCE(s.period_start + interval '1 month', CAST('-infinity' AS timestamp)) " +
+                   "      AND l.entry_time < :periodEnd), 0) AS double precision), " +
+                   "  now() " +
+                   "FROM customer c " +
+                   "LEFT JOIN LATERAL (SELECT period_start, closing_balance FROM customer_balance_snapshot " +
+                   "  WHERE customer_id = c.id AND period_start < :periodStart " +
+                   "  ORDER BY period_start DESC LIMIT 1) s ON true " +
+                   "ON CONFLICT (customer_id, period_start) DO UPDATE " +
+                   "SET closing_balance = EXCLUDED.closing_balance, create_time = EXCLUDED.create_time",
+           nativeQuery = true)
+    int closePeriod(@Param("periodStart") LocalDate periodStart, @Param("periodEnd") LocalDateTime periodEnd);
+
+    /**
+     * 一批客户在指定时点的余额（分）：各自账期不晚于 lastPeriod 的最近快照 + 快照之后到该时点的分录
+     * 快照和分录各按 customer_id = ANY 一次取出，没有快照的客户从头累计
+     */
+    @Query(value = "WITH s AS (" +
+                   "  SELECT DISTINCT ON (customer_id) customer_id, period_start, closing_balance " +
+                   "  FROM customer_balance_snapshot " +
+                   "  WHERE customer_id = ANY(CAST(:customerIds AS bigint[])) AND period_start <= :lastPeriod " +
+                   "  ORDER BY customer_id, period_start DESC" +
+                   "), d AS (" +
+                   "  SELECT l.customer_id, SUM(CAST(l.balance_delta AS numeric)) AS delta " +
+                   "  FROM customer_ledger l LEFT JOIN s ON s.customer_id = l.customer_id " +
+                   "  WHERE l.customer_id = ANY(CAST(:customerIds AS bigint[])) " +
+                   "  AND l.entry_time >= COALESCE(s.period_start + interval '1 month', CAST('-infinity' AS timestamp)) " +
+                   "  AND l.entry_time < :at " +
+                   "  GROUP BY l.customer_id" +
+                   ") " +
+                   "SELECT t.id AS \"customerId\", " +
+                   "CAST(ROUND((COALESCE(CAST(s.closing_balance AS numeric), 0) + COALESCE(d.delta, 0)) * 100) AS bigint) AS \"balanceCents\" " +
+                   "FROM unnest(CAST(:customerIds AS bigint[])) AS t(id) " +
+                   "LEFT JOIN s ON s.customer_id = t.id LEFT JOIN d ON d.customer_id = t.id",
+           nativeQuery = true)
+    List<CustomerBalance> findBalancesAt(@Param("customerIds") Long[] customerIds,
+                                         @Param("lastPeriod") LocalDate lastPeriod,
+                                         @Param("at") LocalDateTime at);
+
+    /**
+     * 客户余额（分）
+     */
+    interface CustomerBalance {
+        Long getCustomerId();
+        Long getBalanceCents();
+    }
+
+}
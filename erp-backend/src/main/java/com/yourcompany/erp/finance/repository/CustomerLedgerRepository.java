@@ -0,0 +1,149 @@
+package com.yourcompany.erp.finance.repository;
+
+import com.yourcompany.erp.finance.entity.CustomerLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 客户明细账
+ * 追加分录按客户取 MAX(seq) + 行号，调用方须已在本事务内更新过（即锁定了）对应客户行，保证顺序号不冲突
+ */
+@Repository
+public interface CustomerLedgerRepository extends JpaRepository<CustomerLedgerEntry, Long> {
+
+    /**
+     * 按顺序号查询客户分录
+     */
+    List<CustomerLedgerEntry> findByCustomerIdOrderBySeq(Long customerId);
+
+    /**
+     * 记销售分录（生成应收后调用，业务时间取应收创建时间）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO customer_ledger (customer_id, seq, entry_type, ref_id, ref_no, amount, balance_delta, entry_time) " +
+                   "SELECT r.customer_id, " +
+                   "  COALESCE((SELECT MAX(l.seq) FROM customer_ledger l WHERE l.customer_id = r.customer_id), 0) " +
+                   "  + ROW_NUMBER() OVER (PARTITION BY r.customer_id ORDER BY r.id), " +
+                   "  'SALE', r.id, o.order_no, r.amount, r.amount, r.create_time " +
+                   "FROM receivable r LEFT JOIN \"order\" o ON o.id = r.order_id " +
+                   "WHERE r.id IN (:receivableIds)",
+           nativeQuery = true)
+    int appendSales(@Param("receivableIds") Collection<Long> receivableIds);
+
+    /**
+     * 记收款分录及其核销分录（核销记录写入后调用，业务时间取收款时间）
+     * 收款分录的余额影响取已核销金额，与客户欠款余额的变动一致
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO customer_ledger (customer_id, seq, entry_type, ref_id, ref_no, amount, balance_delta, entry_time) " +
+                   "SELECT t.customer_id, " +
+                   "  COALESCE((SELECT MAX(l.seq) FROM customer_ledger l WHERE l.customer_id = t.customer_id), 0) " +
+                   "  + ROW_NUMBER() OVER (ORDER BY t.sort_key, t.sub_id), " +
+                   "  t.entry_type, t.ref_id, t.ref_no, t.amount, t.balance_delta, t.entry_time " +
+                   "FROM (" +
+                   "  SELECT p.customer_id, 0 AS sort_key, p.id AS sub_id, 'PAYMENT' AS entry_type, p.id AS ref_id, " +
+                   "         p.payment_no AS ref_no, p.amount, -p.allocated_amount AS balance_delta, p.create_time AS entry_time " +
+                   "  FROM payment p WHERE p.id = :paymentId " +
+                   "  UNION ALL " +
+                   "  SELECT p.customer_id, 1, pr.id, 'ALLOCATION', pr.receivable_id, " +
+                   "         o.order_no, pr.amount, CAST(0 AS double precision), p.create_time " +
+                   "  FROM payment_receivable pr JOIN payment p ON p.id = pr.payment_id " +
+                   "  LEFT JOIN receivable r ON r.id = pr.receivable_id LEFT JOIN \"order\" o ON o.id = r.order_id " +
+                   "  WHERE pr.payment_id = :paymentId" +
+                   ") t",
+           nativeQuery = true)
+    int appendPayment(@Param("paymentId") Long paymentId);
+
+    /**
+     * 记作废分录（应收删除前调用）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO customer_ledger (customer_id, seq, entry_type, ref_id, ref_no, amount, balance_delta, entry_time) " +
+                   "SELECT r.customer_id, " +
+                   "  COALESCE((SELECT MAX(l.seq) FROM customer_ledger l WHERE l.customer_id = r.customer_id), 0) + 1, " +
+                   "  'VOID', r.id, o.order_no, r.amount, -r.amount, LOCALTIMESTAMP " +
+                   "FROM receivable r LEFT JOIN \"order\" o ON o.id = r.order_id " +
+                   "WHERE r.id = :receivableId",
+           nativeQuery = true)
+    int appendVoid(@Param("receivableId") Long receivableId);
+
+    /**
+     * 锁定全部客户行（补记历史分录前调用，期间不会有新的追加）
+     */
+    @Query(value = "SELECT id FROM customer ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockAllCustomers();
+
+    /**
+     * 补记明细账启用前的历史分录：没有销售分录的应收、没有收款分录的收款（连同其核销）
+     * 可重复执行，已记账的单据不会重复
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO customer_ledger (customer_id, seq, entry_type, ref_id, ref_no, amount, balance_delta, entry_time) " +
+                   "SELECT t.customer_id, " +
+                   "  COALESCE((SELECT MAX(l.seq) FROM customer_ledger l WHERE l.customer_id = t.customer_id), 0) " +
+                   "  + ROW_NUMBER() OVER (PARTITION BY t.customer_id ORDER BY t.entry_time, t.sort_key, t.sub_id), " +
+                   "  t.entry_type, t.ref_id, t.ref_no, t.amount, t.balance_delta, t.entry_time " +
+                   "FROM (" +
+                   "  SELECT r.customer_id, r.create_time AS entry_time, 0 AS sort_key, r.id AS sub_id, 'SALE' AS entry_type, " +
+                   "         r.id AS ref_id, o.order_no AS ref_no, r.amount, r.amount AS balance_delta " +
+                   "  FROM receivable r LEFT JOIN \"order\" o ON o.id = r.order_id " +
+                   "  WHERE NOT EXISTS (SELECT 1 FROM customer_ledger l " +
+                   "                    WHERE l.customer_id = r.customer_id AND l.entry_type = 'SALE' AND l.ref_id = r.id) " +
+                   "  UNION ALL " +
+                   "  SELECT p.customer_id, p.create_time, 1, p.id, 'PAYMENT', p.id, p.payment_no, p.amount, -p.allocated_amount " +
+                   "  FROM payment p " +
+                   "  WHERE NOT EXISTS (SELECT 1 FROM customer_ledger l " +
+                   "                    WHERE l.customer_id = p.customer_id AND l.entry_type = 'PAYMENT' AND l.ref_id = p.id) " +
+                   "  UNION ALL " +
+                   "  SELECT p.customer_id, p.create_time, 2, pr.id, 'ALLOCATION', pr.receivable_id, o.order_no, pr.amount, " +
+                   "         CAST(0 AS double precision) " +
+                   "  FROM payment_receivable pr JOIN payment p ON p.id = pr.payment_id " +
+                   "  LEFT JOIN receivable r ON r.id = pr.receivable_id LEFT JOIN \"order\" o ON o.id = r.order_id " +
+                   "  WHERE NOT EXISTS (SELECT 1 FROM customer_ledger l " +
+                   "                    WHERE l.customer_id = p.customer_id AND l.entry_type = 'PAYMENT' AND l.ref_id = p.id)" +
+                   ") t",
+           nativeQuery = true)
+    int backfill();
+
+    /**
+     * 按分录回放客户在指定日期零点的账龄：截至该时点的销售减去之前的核销和作废，按截至该日的逾期天数分组
+     * 到期日取应收的到期日；应收已作废删除或没有到期日时按销售日期 + 客户账期计算
+     */
+    @Query(value = "SELECT " +
+                   "  CAST(ROUND(COALESCE(SUM(CASE WHEN s.overdue_days <= 15 THEN s.unpaid END), 0) * 100) AS bigint) AS \"within15Cents\", " +
+                   "  CAST(ROUND(COALESCE(SUM(CASE WHEN s.overdue_days > 15 AND s.overdue_days <= 30 THEN s.unpaid END), 0) * 100) AS bigint) AS \"within30Cents\", " +
+                   "  CAST(ROUND(COALESCE(SUM(CASE WHEN s.overdue_days > 30 AND s.overdue_days <= 60 THEN s.unpaid END), 0) * 100) AS bigint) AS \"within60Cents\", " +
+                   "  CAST(ROUND(COALESCE(SUM(CASE WHEN s.overdue_days > 60 THEN s.unpaid END), 0) * 100) AS bigint) AS \"over60Cents\" " +
+                   "FROM (" +
+                   "  SELECT CAST(:asOf AS date) - COALESCE(r.due_date, CAST(sale.entry_time AS date) + c.payment_term_days) AS overdue_days, " +
+                   "         CAST(sale.amount AS numeric) - COALESCE(x.settled, 0) AS unpaid " +
+                   "  FROM customer_ledger sale " +
+                   "  JOIN customer c ON c.id = sale.customer_id " +
+                   "  LEFT JOIN receivable r ON r.id = sale.ref_id " +
+                   "  LEFT JOIN (SELECT ref_id, SUM(CAST(amount AS numeric)) AS settled FROM customer_ledger " +
+                   "             WHERE customer_id = :customerId AND entry_type IN ('ALLOCATION', 'VOID') AND entry_time < :asOf " +
+                   "             GROUP BY ref_id) x ON x.ref_id = sale.ref_id " +
+                   "  WHERE sale.customer_id = :customerId AND sale.entry_type = 'SALE' AND sale.entry_time < :asOf" +
+                   ") s",
+           nativeQuery = true)
+    LedgerAge replayAge(@Param("customerId") Long customerId,
+                        @Param("asOf") LocalDateTime asOf);
+
+    /**
+     * 回放账龄分组金额（分）
+     */
+    interface LedgerAge {
+        Long getWithin15Cents();
+        Long getWithin30Cents();
+        Long getWithin60Cents();
+        Long getOver60Cents();
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.yourcompany.erp.finance.repository;
+
+import com.yourcompany.erp.finance.entity.FinanceOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FinanceOutboxRepository extends JpaRepository<FinanceOutbox, Long> {
+
+    /**
+     * 锁定一批待投递事件（SKIP LOCKED：多个节点并行投递互不阻塞）
+     */
+    @Query(value = "SELECT * FROM finance_outbox WHERE status = 'PENDING' " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<FinanceOutbox> lockPending(@Param("limit") int limit);
+
+    /**
+     * 锁定单个待投递事件
+     */
+    @Query(value = "SELECT * FROM finance_outbox WHERE id = :id AND status = 'PENDING' " +
+                   "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<FinanceOutbox> lockPendingById(@Param("id") Long id);
+
+    /**
+     * 查询待投递事件ID
+     */
+    @Query("SELECT o.id FROM FinanceOutbox o WHERE o.status = 'PENDING' ORDER BY o.id")
+    List<Long> findPendingIds(Pageable pageable);
+
+    /**
+     * 锁定订单的待投递事件（不跳过锁：正在投递时等待其完成，再按最新状态判断）
+     */
+    @Query(value = "SELECT * FROM finance_outbox WHERE order_id = :orderId AND status = 'PENDING' " +
+                   "ORDER BY id FOR UPDATE",
+           nativeQuery = true)
+    List<FinanceOutbox> lockPendingByOrderId(@Param("orderId") Long orderId);
+
+    /**
+     * 标记投递完成
+     */
+    @Modifying
+    @Query("UPDATE FinanceOutbox o SET o.status = 'DONE', o.processedTime = :now WHERE o.id IN :ids")
+    int markDone(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 删除事件（订单取消、事件不再投递）
+     */
+    @Modifying
+    @Query("DELETE FROM FinanceOutbox o WHERE o.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+}
@@ -2,11 +2,14 @@ package com.yourcompany.erp.finance.repository;
 
 import com.yourcompany.erp.finance.entity.PaymentReceivable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public interface PaymentReceivableRepository extends JpaRepository<PaymentReceivable, Long> {
@@ -22,10 +25,51 @@ public interface PaymentReceivableRepository extends JpaRepository<PaymentReceiv
     List<PaymentReceivable> findByReceivableId(Long receivableId);
 
     /**
-     * 查询应收的已核销总额
+     * 批量查询多笔收款核销的订单编号（按核销记录ID排序）
      */
-    @Query("SELECT COALESCE(SUM(pr.amount), 0) FROM PaymentReceivable pr " +
-           "WHERE pr.receivableId = :receivableId")
-    Double sumAllocatedByReceivableId(@Param("receivableId") Long receivableId);
+    @Query("SELECT pr.paymentId AS paymentId, o.orderNo AS orderNo FROM PaymentReceivable pr " +
+           "JOIN Receivable r ON r.id = pr.receivableId " +
+           "JOIN Order o ON o.id = r.orderId " +
+           "WHERE pr.paymentId IN :paymentIds ORDER BY pr.id")
+    List<PaymentOrderNo> findOrderNosByPaymentIdIn(@Param("paymentIds") Collection<Long> paymentIds);
+
+    /**
+     * 查询应收的已核销总额（分，按 numeric 精确求和）
+     */
+    @Query(value = "SELECT CAST(ROUND(COALESCE(SUM(CAST(amount AS numeric)), 0) * 100) AS bigint) FROM payment_receivable " +
+                   "WHERE receivable_id = :receivableId",
+           nativeQuery = true)
+    long sumAllocatedCentsByReceivableId(@Param("receivableId") Long receivableId);
+
+    /**
+     * 批量插入核销记录（一条多行 INSERT）
+     * @param amountCents 与应收ID一一对应的核销金额（分）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment_receivable (payment_id, receivable_id, amount) " +
+                   "SELECT :paymentId, t.receivable_id, CAST(t.cents / 100.0 AS double precision) " +
+                   "FROM unnest(CAST(:receivableIds AS bigint[]), CAST(:amountCents AS bigint[])) AS t(receivable_id, cents)",
+           nativeQuery = true)
+    int insertBatch(@Param("paymentId") Long paymentId,
+                    @Param("receivableIds") Long[] receivableIds,
+                    @Param("amountCents") Long[] amountCents);
+
+    /**
+     * 批量保存某笔收款的核销记录
+     * @param amountCents 应收ID -> 核销金额（分）
+     */
+    default void insertAll(Long paymentId, Map<Long, Long> amountCents) {
+        insertBatch(paymentId,
+                amountCents.keySet().toArray(Long[]::new),
+                amountCents.values().toArray(Long[]::new));
+    }
+
+    /**
+     * 收款核销的订单编号
+     */
+    interface PaymentOrderNo {
+        Long getPaymentId();
+        String getOrderNo();
+    }
 
 }
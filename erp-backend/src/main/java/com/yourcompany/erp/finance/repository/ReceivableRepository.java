@@ -1,14 +1,22 @@
 package com.yourcompany.erp.finance.repository;
 
+import com.yourcompany.erp.finance.dto.ReceivableVO;
 import com.yourcompany.erp.finance.entity.Receivable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface ReceivableRepository extends JpaRepository<Receivable, Long>, JpaSpecificationExecutor<Receivable> {
@@ -18,21 +26,243 @@ public interface ReceivableRepository extends JpaRepository<Receivable, Long>, J
      */
     Optional<Receivable> findByOrderId(Long orderId);
 
+    /**
+     * 删除尚未收款的应收（订单取消时）
+     * @return 删除行数，0 表示应收已有收款
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM receivable WHERE id = :id AND paid_amount = 0", nativeQuery = true)
+    int deleteUnpaidById(@Param("id") Long id);
+
+    /**
+     * 查询已生成应收的订单ID（出箱投递幂等判断）
+     */
+    @Query("SELECT r.orderId FROM Receivable r WHERE r.orderId IN :orderIds")
+    Set<Long> findOrderIdsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * 一批待生成应收的到期日（下单日期 + 客户账期，一条查询），订单不存在时按今天计
+     * @param orderIds    订单ID
+     * @param customerIds 与订单ID一一对应的客户ID
+     */
+    @Query(value = "SELECT t.order_id AS \"orderId\", " +
+                   "COALESCE(CAST(o.create_time AS date), CURRENT_DATE) + c.payment_term_days AS \"dueDate\" " +
+                   "FROM unnest(CAST(:orderIds AS bigint[]), CAST(:customerIds AS bigint[])) AS t(order_id, customer_id) " +
+                   "JOIN customer c ON c.id = t.customer_id " +
+                   "LEFT JOIN \"order\" o ON o.id = t.order_id",
+           nativeQuery = true)
+    List<DueDate> findDueDates(@Param("orderIds") Long[] orderIds, @Param("customerIds") Long[] customerIds);
+
     /**
      * 根据客户ID查询应收列表
      */
     List<Receivable> findByCustomerId(Long customerId);
 
     /**
-     * 查询客户未收款总额
+     * 应收列表（关联订单编号和客户名称，直接返回 VO）
+     * @param customerId 客户ID，为空时不限
+     * @param status     应收状态，为空时不限
+     */
+    @Query(value = "SELECT new com.yourcompany.erp.finance.dto.ReceivableVO(r.id, r.orderId, o.orderNo, r.customerId, c.name, " +
+                   "r.amountCents, r.paidAmountCents, r.status, r.dueDate, r.overdueTime, r.lateFeeCents, r.createTime, r.updateTime) " +
+                   "FROM Receivable r " +
+                   "LEFT JOIN Order o ON o.id = r.orderId " +
+                   "LEFT JOIN Customer c ON c.id = r.customerId " +
+                   "WHERE (:customerId IS NULL OR r.customerId = :customerId) " +
+                   "AND (:status IS NULL OR r.status = :status) " +
+                   "ORDER BY r.createTime DESC, r.id DESC",
+           countQuery = "SELECT COUNT(r) FROM Receivable r " +
+                        "WHERE (:customerId IS NULL OR r.customerId = :customerId) " +
+                        "AND (:status IS NULL OR r.status = :status)")
+    Page<ReceivableVO> findReceivableVOs(@Param("customerId") Long customerId,
+                                         @Param("status") Receivable.ReceivableStatus status,
+                                         Pageable pageable);
+
+    /**
+     * 客户全部应收（关联订单编号和客户名称，直接返回 VO）
      */
-    @Query("SELECT COALESCE(SUM(r.amount - r.paidAmount), 0) FROM Receivable r " +
-           "WHERE r.customerId = :customerId AND r.status != 'PAID'")
-    Double sumUnpaidByCustomerId(@Param("customerId") Long customerId);
+    @Query("SELECT new com.yourcompany.erp.finance.dto.ReceivableVO(r.id, r.orderId, o.orderNo, r.customerId, c.name, " +
+           "r.amountCents, r.paidAmountCents, r.status, r.dueDate, r.overdueTime, r.lateFeeCents, r.createTime, r.updateTime) " +
+           "FROM Receivable r " +
+           "LEFT JOIN Order o ON o.id = r.orderId " +
+           "LEFT JOIN Customer c ON c.id = r.customerId " +
+           "WHERE r.customerId = :customerId " +
+           "ORDER BY r.id")
+    List<ReceivableVO> findReceivableVOsByCustomerId(@Param("customerId") Long customerId);
+
+    /**
+     * 按先后顺序分页取客户的未收应收（自动核销用，按 (创建时间, ID) 键集翻页，走客户+创建时间索引）
+     * 调用方逐页累计，覆盖收款金额即停止，不扫描客户的全部未收应收
+     * @param afterTime 上一页最后一条的创建时间（第一页传最早时间）
+     * @param afterId   上一页最后一条的ID（第一页传 0）
+     */
+    @Query(value = "SELECT r.id AS \"receivableId\", o.order_no AS \"orderNo\", r.create_time AS \"createTime\", " +
+                   "CAST(ROUND((CAST(r.amount AS numeric) - CAST(r.paid_amount AS numeric)) * 100) AS bigint) AS \"unpaidCents\" " +
+                   "FROM receivable r LEFT JOIN \"order\" o ON o.id = r.order_id " +
+                   "WHERE r.customer_id = :customerId AND r.status <> 'PAID' " +
+                   "AND (r.create_time, r.id) > (:afterTime, :afterId) " +
+                   "ORDER BY r.create_time, r.id LIMIT :limit",
+           nativeQuery = true)
+    List<OpenReceivable> findOpenForAllocation(@Param("customerId") Long customerId,
+                                               @Param("afterTime") LocalDateTime afterTime,
+                                               @Param("afterId") long afterId,
+                                               @Param("limit") int limit);
+
+    /**
+     * 查询客户未收款总额（分，按 numeric 精确求和）
+     */
+    @Query(value = "SELECT CAST(ROUND(COALESCE(SUM(CAST(amount AS numeric) - CAST(paid_amount AS numeric)), 0) * 100) AS bigint) " +
+                   "FROM receivable WHERE customer_id = :customerId AND status <> 'PAID'",
+           nativeQuery = true)
+    long sumUnpaidCentsByCustomerId(@Param("customerId") Long customerId);
 
     /**
      * 根据状态查询应收
      */
     List<Receivable> findByStatus(Receivable.ReceivableStatus status);
 
+    /**
+     * 按客户分组统计未收应收的账龄分布（一条聚合查询，金额按 numeric 求和后以分返回）
+     * 账龄按截至 asOf 的逾期天数计：未到期及逾期 15 天内、16-30 天、31-60 天、60 天以上；
+     * 早期没有到期日的应收按创建日期 + 客户账期计算（与逾期扫描补齐规则一致）
+     * 按 sortBy 指定的账龄段金额降序（金额相同按客户ID），只返回前 limit 个客户
+     * @param customerIds 指定客户，为空数组时不限
+     * @param level       客户等级，为空时不限
+     * @param sortBy      排序账龄段：total / within15 / within30 / within60 / over60
+     */
+    @Query(value = "SELECT g.* FROM (" +
+                   "  SELECT a.customer_id AS \"customerId\", a.name AS \"customerName\", " +
+                   "  CAST(ROUND(SUM(CASE WHEN a.overdue_days <= 15 THEN a.unpaid ELSE 0 END) * 100) AS bigint) AS \"within15Cents\", " +
+                   "  CAST(ROUND(SUM(CASE WHEN a.overdue_days > 15 AND a.overdue_days <= 30 THEN a.unpaid ELSE 0 END) * 100) AS bigint) AS \"within30Cents\", " +
+                   "  CAST(ROUND(SUM(CASE WHEN a.overdue_days > 30 AND a.overdue_days <= 60 THEN a.unpaid ELSE 0 END) * 100) AS bigint) AS \"within60Cents\", " +
+                   "  CAST(ROUND(SUM(CASE WHEN a.overdue_days > 60 THEN a.unpaid ELSE 0 END) * 100) AS bigint) AS \"over60Cents\" " +
+                   "  FROM (" +
+                   "    SELECT r.customer_id, c.name, CAST(r.amount AS numeric) - CAST(r.paid_amount AS numeric) AS unpaid, " +
+                   "           CAST(:asOf AS date) - COALESCE(r.due_date, CAST(r.create_time AS date) + c.payment_term_days) AS overdue_days " +
+                   "    FROM receivable r JOIN customer c ON c.id = r.customer_id " +
+                   "    WHERE r.status <> 'PAID' " +
+                   "    AND (cardinality(CAST(:customerIds AS bigint[])) = 0 OR r.customer_id = ANY(CAST(:customerIds AS bigint[]))) " +
+                   "    AND (CAST(:level AS varchar) IS NULL OR c.level = CAST(:level AS varchar))" +
+                   "  ) a " +
+                   "  GROUP BY a.customer_id, a.name" +
+                   ") g " +
+                   "ORDER BY CASE CAST(:sortBy AS varchar) " +
+                   "  WHEN 'total' THEN g.\"within15Cents\" + g.\"within30Cents\" + g.\"within60Cents\" + g.\"over60Cents\" " +
+                   "  WHEN 'within15' THEN g.\"within15Cents\" WHEN 'within30' THEN g.\"within30Cents\" " +
+                   "  WHEN 'within60' THEN g.\"within60Cents\" ELSE g.\"over60Cents\" END DESC, g.\"customerId\" " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<AgeBuckets> aggregateAge(@Param("asOf") LocalDate asOf,
+                                  @Param("customerIds") Long[] customerIds,
+                                  @Param("level") String level,
+                                  @Param("sortBy") String sortBy,
+                                  @Param("limit") int limit);
+
+    /**
+     * 核销：累加已收金额并同时推导状态（不超过应收金额，按 numeric 精确计算）
+     * @param amountCents 核销金额（分）
+     * @return 更新行数，0 表示应收不存在或核销金额超过未收金额
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE receivable SET paid_amount = CAST(CAST(paid_amount AS numeric) + :amountCents / 100.0 AS double precision), " +
+                   "status = CASE WHEN CAST(paid_amount AS numeric) + :amountCents / 100.0 >= CAST(amount AS numeric) THEN 'PAID' " +
+                   "              WHEN CAST(paid_amount AS numeric) + :amountCents / 100.0 > 0 THEN 'PARTIAL' ELSE 'UNPAID' END, " +
+                   "update_time = now() " +
+                   "WHERE id = :receivableId AND CAST(paid_amount AS numeric) + :amountCents / 100.0 <= CAST(amount AS numeric)",
+           nativeQuery = true)
+    int allocate(@Param("receivableId") Long receivableId, @Param("amountCents") long amountCents);
+
+    /**
+     * 批量核销：一条语句累加多笔应收的已收金额并推导状态，先按应收ID顺序加行锁
+     * 应收ID不能重复（调用方先合并）
+     * @param amountCents 与应收ID一一对应的核销金额（分）
+     * @return 更新行数，小于应收数表示有应收核销金额超过未收金额
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "WITH req AS (" +
+                   "  SELECT t.id, t.cents / 100.0 AS amount " +
+                   "  FROM unnest(CAST(:receivableIds AS bigint[]), CAST(:amountCents AS bigint[])) AS t(id, cents)" +
+                   "), locked AS MATERIALIZED (" +
+                   "  SELECT r.id FROM receivable r JOIN req ON req.id = r.id ORDER BY r.id FOR UPDATE OF r" +
+                   ") " +
+                   "UPDATE receivable r SET paid_amount = CAST(CAST(r.paid_amount AS numeric) + req.amount AS double precision), " +
+                   "status = CASE WHEN CAST(r.paid_amount AS numeric) + req.amount >= CAST(r.amount AS numeric) THEN 'PAID' " +
+                   "              WHEN CAST(r.paid_amount AS numeric) + req.amount > 0 THEN 'PARTIAL' ELSE 'UNPAID' END, " +
+                   "update_time = now() " +
+                   "FROM req JOIN locked ON locked.id = req.id " +
+                   "WHERE r.id = req.id AND CAST(r.paid_amount AS numeric) + req.amount <= CAST(r.amount AS numeric)",
+           nativeQuery = true)
+    int allocateBatch(@Param("receivableIds") Long[] receivableIds, @Param("amountCents") Long[] amountCents);
+
+    /**
+     * 按ID顺序取指定ID之后的一批未收应收ID（逾期扫描分批遍历用）
+     */
+    @Query(value = "SELECT id FROM receivable WHERE status IN ('UNPAID', 'PARTIAL') AND id > :afterId " +
+                   "ORDER BY id LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findUnpaidIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 补齐早期应收的到期日（生成日期 + 客户账期）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE receivable r SET due_date = CAST(r.create_time AS date) + c.payment_term_days " +
+                   "FROM customer c WHERE c.id = r.customer_id AND r.id = ANY(CAST(:ids AS bigint[])) AND r.due_date IS NULL",
+           nativeQuery = true)
+    int fillDueDates(@Param("ids") Long[] ids);
+
+    /**
+     * 标记新逾期的应收（到期日早于业务日期且尚未标记）
+     * @return 新标记的应收数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE receivable SET overdue_time = now() " +
+                   "WHERE id = ANY(CAST(:ids AS bigint[])) AND overdue_time IS NULL AND due_date < :asOf",
+           nativeQuery = true)
+    int markOverdue(@Param("ids") Long[] ids, @Param("asOf") LocalDate asOf);
+
+    /**
+     * 计提滞纳金：未收金额 × 日费率 × 自上次计提（或到期日）起的天数，每次按分四舍五入
+     * 计提到的日期随之推进，同一天重复扫描不会重复计提
+     * @return 计提的应收数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE receivable SET late_fee = CAST(CAST(late_fee AS numeric) + ROUND(" +
+                   "  (CAST(amount AS numeric) - CAST(paid_amount AS numeric)) * CAST(:dailyRate AS numeric) " +
+                   "  * (CAST(:asOf AS date) - COALESCE(late_fee_date, due_date)), 2) AS double precision), " +
+                   "late_fee_date = :asOf " +
+                   "WHERE id = ANY(CAST(:ids AS bigint[])) AND due_date < :asOf AND COALESCE(late_fee_date, due_date) < :asOf",
+           nativeQuery = true)
+    int accrueLateFees(@Param("ids") Long[] ids, @Param("asOf") LocalDate asOf, @Param("dailyRate") double dailyRate);
+
+    /**
+     * 客户账龄分组金额（分）
+     */
+    interface AgeBuckets {
+        Long getCustomerId();
+        String getCustomerName();
+        Long getWithin15Cents();
+        Long getWithin30Cents();
+        Long getWithin60Cents();
+        Long getOver60Cents();
+    }
+
+    /**
+     * 订单应收到期日
+     */
+    interface DueDate {
+        Long getOrderId();
+        LocalDate getDueDate();
+    }
+
+    /**
+     * 待核销应收
+     */
+    interface OpenReceivable {
+        Long getReceivableId();
+        String getOrderNo();
+        LocalDateTime getCreateTime();
+        Long getUnpaidCents();
+    }
+
 }
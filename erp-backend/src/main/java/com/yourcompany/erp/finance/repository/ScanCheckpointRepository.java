@@ -0,0 +1,34 @@
+package com.yourcompany.erp.finance.repository;
+
+import com.yourcompany.erp.finance.entity.ScanCheckpoint;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ScanCheckpointRepository extends JpaRepository<ScanCheckpoint, String> {
+
+    /**
+     * 创建断点（已存在则不变），多个节点同时首次运行也只有一行
+     * 同时清空持久化上下文，随后加锁查询读到的是最新断点
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO scan_checkpoint (name, last_id, finished, scanned, newly_overdue, late_fee_accrued) " +
+                   "VALUES (:name, 0, false, 0, 0, 0) ON CONFLICT (name) DO NOTHING",
+           nativeQuery = true)
+    int init(@Param("name") String name);
+
+    /**
+     * 加锁查询断点（多个节点同时扫描时逐批串行推进）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ScanCheckpoint c WHERE c.name = :name")
+    Optional<ScanCheckpoint> findByNameForUpdate(@Param("name") String name);
+
+}
@@ -0,0 +1,70 @@
+package com.yourcompany.erp.finance.service;
+
+import com.yourcompany.erp.finance.dto.AccountStatementVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对账单明细查询：从客户明细账按时间范围取分录，数据库按时间顺序计算滚动余额（按客户分别累计）
+ */
+@Service
+public class AccountStatementService {
+
+    /**
+     * 核销分录不影响往来余额，不列入对账单；同一时刻按记账顺序号排序，保证滚动余额顺序稳定
+     * 客户ID与期初余额（分）以两个数组传入，一条查询取出一批客户的明细
+     */
+    private static final String LINES_SQL =
+            "SELECT l.customer_id, l.entry_time AS line_time, " +
+            "       CASE l.entry_type WHEN 'SALE' THEN '销售' WHEN 'PAYMENT' THEN '收款' ELSE '作废' END AS type, " +
+            "       COALESCE(l.ref_no, '') AS ref_no, " +
+            "       GREATEST(l.balance_delta, 0) AS debit, GREATEST(-l.balance_delta, 0) AS credit, " +
+            "       t.opening_cents / 100.0 + SUM(CAST(l.balance_delta AS numeric)) " +
+            "           OVER (PARTITION BY l.customer_id ORDER BY l.entry_time, l.seq " +
+            "                 ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW) AS balance " +
+            "FROM unnest(CAST(? AS bigint[]), CAST(? AS bigint[])) AS t(customer_id, opening_cents) " +
+            "JOIN customer_ledger l ON l.customer_id = t.customer_id " +
+            "WHERE l.entry_time >= ? AND l.entry_time < ? AND l.entry_type <> 'ALLOCATION' " +
+            "ORDER BY l.customer_id, l.entry_time, l.seq";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 查询一批客户在 [startDate, endDate] 内的对账单明细（含滚动余额）
+     * @param openingCents 客户ID -> 期初余额（分），滚动余额从此累加
+     * @return 客户ID -> 明细（没有分录的客户不在结果中）
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<AccountStatementVO.StatementDetail>> loadLines(Map<Long, Long> openingCents,
+                                                                         LocalDate startDate, LocalDate endDate) {
+        Long[] customerIds = openingCents.keySet().toArray(Long[]::new);
+        Long[] openings = Arrays.stream(customerIds).map(openingCents::get).toArray(Long[]::new);
+        Timestamp from = Timestamp.valueOf(startDate.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(endDate.plusDays(1).atStartOfDay());
+
+        Map<Long, List<AccountStatementVO.StatementDetail>> lines = new HashMap<>();
+        jdbcTemplate.query(LINES_SQL, rs -> {
+            lines.computeIfAbsent(rs.getLong("customer_id"), k -> new ArrayList<>())
+                    .add(new AccountStatementVO.StatementDetail(
+                            rs.getTimestamp("line_time").toLocalDateTime().toLocalDate(),
+                            rs.getString("type"),
+                            rs.getString("ref_no"),
+                            rs.getDouble("debit"),
+                            rs.getDouble("credit"),
+                            rs.getDouble("balance")));
+        }, customerIds, openings, from, to);
+        return lines;
+    }
+
+}
@@ -0,0 +1,483 @@
+package com.yourcompany.erp.finance.service;
+
+import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.money.Money;
+import com.yourcompany.erp.finance.dto.BankImportConfirmVO;
+import com.yourcompany.erp.finance.dto.BankImportResultVO;
+import com.yourcompany.erp.finance.dto.PaymentAllocationPlanVO;
+import com.yourcompany.erp.finance.dto.PaymentBatchDTO;
+import com.yourcompany.erp.finance.repository.BankImportLineRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.Map.entry;
+
+/**
+ * 银行流水导入（逐行读取银行导出文件，按订单号、电话、金额在内存哈希索引中匹配客户和未收应收，
+ * 给出核销建议；确认后分批走批量核销入账）
+ * 每行流水以流水号（无流水号时为整行内容摘要）标识，入账时登记，同一流水不会重复入账
+ */
+@Slf4j
+@Service
+public class BankImportService {
+
+    private static final String OPEN_RECEIVABLES_SQL =
+            "SELECT r.id, r.customer_id, r.create_time, o.order_no, c.name AS customer_name, c.phone, " +
+            "CAST(ROUND((CAST(r.amount AS numeric) - CAST(r.paid_amount AS numeric)) * 100) AS bigint) AS unpaid_cents " +
+            "FROM receivable r JOIN customer c ON c.id = r.customer_id " +
+            "LEFT JOIN \"order\" o ON o.id = r.order_id " +
+            "WHERE r.status <> 'PAID' ORDER BY r.create_time, r.id";
+
+    /** 表头列名（银行导出格式各异，按常见列名识别） */
+    private static final Map<String, String> HEADER_ALIASES = Map.ofEntries(
+            entry("交易日期", "date"), entry("日期", "date"), entry("date", "date"),
+            entry("金额", "amount"), entry("交易金额", "amount"), entry("贷方金额", "amount"),
+            entry("收入金额", "amount"), entry("amount", "amount"),
+            entry("对方户名", "name"), entry("付款人", "name"), entry("户名", "name"), entry("name", "name"),
+            entry("电话", "phone"), entry("手机", "phone"), entry("联系电话", "phone"), entry("phone", "phone"),
+            entry("摘要", "reference"), entry("附言", "reference"), entry("用途", "reference"),
+            entry("备注", "reference"), entry("reference", "reference"),
+            entry("流水号", "serial"), entry("交易流水号", "serial"), entry("交易参考号", "serial"),
+            entry("serial", "serial"));
+
+    /** 摘要中可能是订单号的片段 */
+    private static final Pattern REFERENCE_TOKEN = Pattern.compile("[A-Za-z0-9_-]{4,}");
+
+    /** 同一电话对应多个客户时不按电话匹配 */
+    private static final Long AMBIGUOUS = -1L;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private FinanceService financeService;
+
+    @Autowired
+    private BankImportLineRepository bankImportLineRepository;
+
+    @Value("${erp.bank-import.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${erp.bank-import.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * 匹配银行流水（只给出核销建议，不入账）
+     * 同一文件内的多行流水依次扣减应收的剩余未收金额，不会重复核销同一笔应收；已入账过的流水只标记，不参与匹配
+     */
+    @Transactional(readOnly = true)
+    public BankImportResultVO match(Reader reader) {
+        BankImportResultVO result = new BankImportResultVO();
+
+        BufferedReader in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        try {
+            String header = in.readLine();
+            if (header == null) {
+                throw new BusinessException("银行流水文件为空");
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            char delimiter = header.indexOf('\t') >= 0 && header.indexOf(',') < 0 ? '\t' : ',';
+            Map<String, Integer> columns = parseHeader(split(header, delimiter));
+            if (!columns.containsKey("amount")) {
+                throw new BusinessException("银行流水文件缺少金额列");
+            }
+
+            String text;
+            int lineNo = 1;
+            Map<String, Integer> occurrences = new HashMap<>();
+            while ((text = in.readLine()) != null) {
+                lineNo++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                List<String> fields = split(text, delimiter);
+                long cents = parseCents(field(fields, columns.get("amount")));
+                if (cents <= 0) {
+                    // 支出或金额无法解析
+                    result.setSkippedLines(result.getSkippedLines() + 1);
+                    continue;
+                }
+
+                BankImportResultVO.Line line = new BankImportResultVO.Line();
+                line.setLineNo(lineNo);
+                line.setTradeDate(field(fields, columns.get("date")));
+                line.setAmount(Money.toYuan(cents));
+                line.setPayerName(field(fields, columns.get("name")));
+                line.setPhone(field(fields, columns.get("phone")));
+                line.setReference(field(fields, columns.get("reference")));
+                line.setBankRef(bankRef(field(fields, columns.get("serial")), text, occurrences));
+                result.getLines().add(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // 一次查询已入账的流水，其余按文件顺序匹配
+        Set<String> posted = bankImportLineRepository.findPostedRefs(
+                result.getLines().stream().map(BankImportResultVO.Line::getBankRef).toArray(String[]::new));
+        Index index = loadIndex();
+        for (BankImportResultVO.Line line : result.getLines()) {
+            result.setTotalLines(result.getTotalLines() + 1);
+            if (posted.contains(line.getBankRef())) {
+                line.setPosted(true);
+                line.setMatchedBy("NONE");
+                line.setUnallocatedAmount(line.getAmount());
+                result.setPostedLines(result.getPostedLines() + 1);
+                continue;
+            }
+            matchLine(index, line, Money.toCents(line.getAmount()));
+            if (line.getPayment() != null) {
+                result.setMatchedLines(result.getMatchedLines() + 1);
+            } else if (line.getCustomerId() != null) {
+                result.setPartialLines(result.getPartialLines() + 1);
+            } else {
+                result.setUnmatchedLines(result.getUnmatchedLines() + 1);
+            }
+        }
+
+        log.info("银行流水匹配完成，共 {} 行，可入账 {} 行，部分匹配 {} 行，未匹配 {} 行，已入账 {} 行，跳过 {} 行",
+                result.getTotalLines(), result.getMatchedLines(), result.getPartialLines(),
+                result.getUnmatchedLines(), result.getPostedLines(), result.getSkippedLines());
+        return result;
+    }
+
+    /**
+     * 确认入账（按批提交，每批一个事务；整批失败时逐笔重试，记录失败的收款）
+     * 流水已入账过、或同一次提交中重复的收款跳过并在结果中列出
+     */
+    public BankImportConfirmVO confirm(List<PaymentBatchDTO> payments) {
+        BankImportConfirmVO result = new BankImportConfirmVO();
+
+        // 过滤已入账的流水
+        Set<String> posted = new HashSet<>(bankImportLineRepository.findPostedRefs(payments.stream()
+                .map(PaymentBatchDTO::getBankRef).filter(Objects::nonNull).toArray(String[]::new)));
+        List<Integer> pending = new ArrayList<>(payments.size());
+        for (int i = 0; i < payments.size(); i++) {
+            String bankRef = payments.get(i).getBankRef();
+            if (bankRef != null && !posted.add(bankRef)) {
+                result.getDuplicates().add(i);
+            } else {
+                pending.add(i);
+            }
+        }
+
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Integer> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            try {
+                financeService.recordBatchPayments(batch.stream().map(payments::get).toList());
+                result.setSucceeded(result.getSucceeded() + batch.size());
+            } catch (Exception e) {
+                log.warn("银行流水第 {} 批入账失败，改为逐笔入账: {}", from / batchSize + 1, e.getMessage());
+                for (int index : batch) {
+                    try {
+                        financeService.recordBatchPayment(payments.get(index));
+                        result.setSucceeded(result.getSucceeded() + 1);
+                    } catch (Exception ex) {
+                        result.getFailures().add(new BankImportConfirmVO.Failure(index, ex.getMessage()));
+                    }
+                }
+            }
+        }
+
+        log.info("银行流水确认入账完成，成功 {} 笔，已入账跳过 {} 笔，失败 {} 笔",
+                result.getSucceeded(), result.getDuplicates().size(), result.getFailures().size());
+        return result;
+    }
+
+    /**
+     * 匹配单行流水：先按摘要中的订单号，再按电话，最后按唯一金额
+     */
+    private void matchLine(Index index, BankImportResultVO.Line line, long amountCents) {
+        long remaining = amountCents;
+        String matchedBy = "NONE";
+        Long customerId = null;
+
+        // 1. 摘要中的订单号
+        OpenItem referenced = null;
+        if (line.getReference() != null) {
+            Matcher matcher = REFERENCE_TOKEN.matcher(line.getReference());
+            while (referenced == null && matcher.find()) {
+                referenced = index.byOrderNo.get(matcher.group());
+            }
+        }
+        if (referenced != null) {
+            customerId = referenced.customerId;
+            matchedBy = "ORDER_NO";
+        }
+
+        // 2. 电话
+        if (customerId == null) {
+            String phone = normalizePhone(line.getPhone());
+            Long byPhone = phone == null ? null : index.customerByPhone.get(phone);
+            if (byPhone != null && !AMBIGUOUS.equals(byPhone)) {
+                customerId = byPhone;
+                matchedBy = "PHONE";
+            }
+        }
+
+        if (customerId != null) {
+            // 先核销摘要指明的应收，再核销金额恰好相等的应收，其余按先后顺序
+            List<OpenItem> items = index.byCustomer.getOrDefault(customerId, List.of());
+            if (referenced != null) {
+                remaining -= allocate(line, referenced, remaining);
+            }
+            for (OpenItem item : items) {
+                if (remaining > 0 && item.remaining == remaining) {
+                    remaining -= allocate(line, item, remaining);
+                    break;
+                }
+            }
+            for (OpenItem item : items) {
+                if (remaining == 0) {
+                    break;
+                }
+                remaining -= allocate(line, item, remaining);
+            }
+        } else {
+            // 3. 只凭金额：全部未收应收中恰好有一笔剩余金额相等
+            OpenItem only = null;
+            int candidates = 0;
+            for (OpenItem item : index.byAmount.getOrDefault(amountCents, List.of())) {
+                if (item.remaining == amountCents) {
+                    only = item;
+                    candidates++;
+                }
+            }
+            if (candidates == 1) {
+                customerId = only.customerId;
+                matchedBy = "AMOUNT";
+                remaining -= allocate(line, only, remaining);
+            }
+        }
+
+        line.setMatchedBy(matchedBy);
+        line.setCustomerId(customerId);
+        line.setCustomerName(customerId == null ? null : index.customerNames.get(customerId));
+        line.setUnallocatedAmount(Money.toYuan(remaining));
+        if (remaining == 0) {
+            line.setPayment(toPayment(line));
+        }
+    }
+
+    /**
+     * 从应收剩余未收金额中核销，返回核销的分
+     */
+    private long allocate(BankImportResultVO.Line line, OpenItem item, long cents) {
+        long amount = Math.min(item.remaining, cents);
+        if (amount <= 0) {
+            return 0;
+        }
+        line.getAllocations().add(new PaymentAllocationPlanVO.AllocationLine(
+                item.receivableId, item.orderNo, item.createTime, Money.toYuan(item.remaining), Money.toYuan(amount)));
+        item.remaining -= amount;
+        return amount;
+    }
+
+    private PaymentBatchDTO toPayment(BankImportResultVO.Line line) {
+        PaymentBatchDTO dto = new PaymentBatchDTO();
+        dto.setCustomerId(line.getCustomerId());
+        dto.setTotalAmount(line.getAmount());
+        dto.setPaymentMethod("银行转账");
+        dto.setBankRef(line.getBankRef());
+        String remark = "银行流水第" + line.getLineNo() + "行"
+                + (line.getReference() == null ? "" : "：" + line.getReference());
+        dto.setRemark(remark.length() > 255 ? remark.substring(0, 255) : remark);
+
+        List<PaymentBatchDTO.AllocationItem> allocations = new ArrayList<>();
+        for (PaymentAllocationPlanVO.AllocationLine allocation : line.getAllocations()) {
+            PaymentBatchDTO.AllocationItem item = new PaymentBatchDTO.AllocationItem();
+            item.setReceivableId(allocation.getReceivableId());
+            item.setAmount(allocation.getAmount());
+            allocations.add(item);
+        }
+        dto.setAllocations(allocations);
+        return dto;
+    }
+
+    /**
+     * 游标读取全部未收应收，建立订单号、电话、客户、金额索引
+     */
+    private Index loadIndex() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+
+        Index index = new Index();
+        jdbcTemplate.query(OPEN_RECEIVABLES_SQL, rs -> {
+            Timestamp createTime = rs.getTimestamp("create_time");
+            OpenItem item = new OpenItem(rs.getLong("id"), rs.getLong("customer_id"), rs.getString("order_no"),
+                    createTime == null ? null : createTime.toLocalDateTime(), rs.getLong("unpaid_cents"));
+
+            if (item.orderNo != null) {
+                index.byOrderNo.put(item.orderNo, item);
+            }
+            index.byCustomer.computeIfAbsent(item.customerId, k -> new ArrayList<>()).add(item);
+            index.byAmount.computeIfAbsent(item.remaining, k -> new ArrayList<>()).add(item);
+            if (!index.customerNames.containsKey(item.customerId)) {
+                index.customerNames.put(item.customerId, rs.getString("customer_name"));
+                String phone = normalizePhone(rs.getString("phone"));
+                if (phone != null) {
+                    index.customerByPhone.merge(phone, item.customerId, (a, b) -> a.equals(b) ? a : AMBIGUOUS);
+                }
+            }
+        });
+        return index;
+    }
+
+    /**
+     * 流水标识：有流水号时取流水号，否则取整行内容（同一文件内内容完全相同的行按出现次序区分）的 SHA-256
+     */
+    private static String bankRef(String serial, String text, Map<String, Integer> occurrences) {
+        String key;
+        if (serial != null) {
+            key = "SN:" + serial;
+        } else {
+            String content = text.strip();
+            key = "LINE:" + content + "#" + occurrences.merge(content, 1, Integer::sum);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<String, Integer> parseHeader(List<String> names) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String column = HEADER_ALIASES.get(names.get(i).trim().toLowerCase());
+            if (column != null) {
+                columns.putIfAbsent(column, i);
+            }
+        }
+        return columns;
+    }
+
+    private String field(List<String> fields, Integer column) {
+        if (column == null || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 解析金额（去掉千分位和货币符号），按十进制精确换算为分
+     * 无法解析或超过两位小数（不是合法的人民币金额）时返回 0
+     */
+    private long parseCents(String text) {
+        if (text == null) {
+            return 0;
+        }
+        String value = text.replace(",", "").replace("¥", "").replace("￥", "").replace(" ", "");
+        try {
+            return new BigDecimal(value).movePointRight(2).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 电话只保留数字，取后 11 位（去掉 +86 等前缀）
+     */
+    private static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.length() < 7) {
+            return null;
+        }
+        return digits.length() > 11 ? digits.substring(digits.length() - 11) : digits;
+    }
+
+    /**
+     * 拆分一行 CSV（支持双引号包裹和转义）
+     */
+    private static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    /**
+     * 未收应收索引
+     */
+    private static final class Index {
+        final Map<String, OpenItem> byOrderNo = new HashMap<>();
+        final Map<String, Long> customerByPhone = new HashMap<>();
+        final Map<Long, List<OpenItem>> byCustomer = new HashMap<>();   // 按应收先后顺序
+        final Map<Long, List<OpenItem>> byAmount = new HashMap<>();     // 按导入时的未收金额（分）
+        final Map<Long, String> customerNames = new HashMap<>();
+    }
+
+    /**
+     * 未收应收（remaining 随匹配扣减）
+     */
+    private static final class OpenItem {
+        final long receivableId;
+        final long customerId;
+        final String orderNo;
+        final LocalDateTime createTime;
+        long remaining;
+
+        OpenItem(long receivableId, long customerId, String orderNo, LocalDateTime createTime, long remaining) {
+            this.receivableId = receivableId;
+            this.customerId = customerId;
+            this.orderNo = orderNo;
+            this.createTime = createTime;
+            this.remaining = remaining;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.yourcompany.erp.finance.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 财务出箱事件定时投递
+ */
+@Slf4j
+@Component
+public class FinanceOutboxDispatcher {
+
+    @Autowired
+    private FinanceOutboxService financeOutboxService;
+
+    @Value("${erp.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${erp.outbox.poll-interval-ms:500}")
+    public void dispatch() {
+        try {
+            // 满批说明还有积压，继续投递
+            while (financeOutboxService.dispatchBatch(batchSize) == batchSize) {
+                log.debug("财务事件积压，继续投递");
+            }
+        } catch (Exception e) {
+            log.warn("财务事件批量投递失败，改为逐条投递: {}", e.getMessage());
+            dispatchOneByOne();
+        }
+    }
+
+    /**
+     * 逐条投递，失败的事件记录错误后留待下次重试
+     */
+    private void dispatchOneByOne() {
+        for (Long eventId : financeOutboxService.findPendingIds(batchSize)) {
+            try {
+                financeOutboxService.dispatchOne(eventId);
+            } catch (Exception e) {
+                financeOutboxService.markFailed(eventId, e.getMessage());
+            }
+        }
+    }
+
+}
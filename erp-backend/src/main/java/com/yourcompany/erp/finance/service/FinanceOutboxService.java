@@ -0,0 +1,138 @@
+package com.yourcompany.erp.finance.service;
+
+import com.yourcompany.erp.finance.entity.FinanceOutbox;
+import com.yourcompany.erp.finance.entity.Receivable;
+import com.yourcompany.erp.finance.repository.FinanceOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 财务出箱服务：订单事务内登记财务副作用，后台批量投递（至少一次，幂等）
+ */
+@Slf4j
+@Service
+public class FinanceOutboxService {
+
+    @Autowired
+    private FinanceOutboxRepository financeOutboxRepository;
+
+    @Autowired
+    private FinanceService financeService;
+
+    @Value("${erp.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    /**
+     * 登记"生成应收"事件（须在订单事务内调用）
+     * @param amountCents 应收金额（分）
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueReceivable(Long orderId, Long customerId, long amountCents) {
+        FinanceOutbox event = new FinanceOutbox();
+        event.setEventType(FinanceOutbox.EventType.RECEIVABLE_CREATE);
+        event.setOrderId(orderId);
+        event.setCustomerId(customerId);
+        event.setAmountCents(amountCents);
+        financeOutboxRepository.save(event);
+    }
+
+    /**
+     * 撤销订单的"生成应收"（订单取消时调用，须在订单事务内）
+     * 事件尚未投递时删除事件并释放预占额度，已投递时作废未收款的应收
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cancelReceivable(Long orderId) {
+        List<FinanceOutbox> events = financeOutboxRepository.lockPendingByOrderId(orderId);
+        if (events.isEmpty()) {
+            financeService.voidReceivable(orderId);
+            return;
+        }
+        financeOutboxRepository.deleteByIds(
+                events.stream().map(FinanceOutbox::getId).collect(Collectors.toList()));
+        events.forEach(event -> financeService.releaseCredit(event.getCustomerId(), event.getAmountCents()));
+        log.info("订单 {} 的财务事件已撤销，释放预占额度", orderId);
+    }
+
+    /**
+     * 投递一批事件
+     * @return 本批处理的事件数
+     */
+    @Transactional
+    public int dispatchBatch(int batchSize) {
+        List<FinanceOutbox> events = financeOutboxRepository.lockPending(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        apply(events);
+        return events.size();
+    }
+
+    /**
+     * 单独投递一个事件（批量失败时逐条重试，隔离坏消息）
+     */
+    @Transactional
+    public void dispatchOne(Long eventId) {
+        List<FinanceOutbox> events = financeOutboxRepository.lockPendingById(eventId);
+        if (!events.isEmpty()) {
+            apply(events);
+        }
+    }
+
+    /**
+     * 查询待投递事件ID
+     */
+    public List<Long> findPendingIds(int limit) {
+        return financeOutboxRepository.findPendingIds(PageRequest.of(0, limit));
+    }
+
+    /**
+     * 记录投递失败，超过最大次数后不再自动重试
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void markFailed(Long eventId, String error) {
+        financeOutboxRepository.findById(eventId).ifPresent(event -> {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+            if (event.getAttempts() >= maxAttempts) {
+                event.setStatus(FinanceOutbox.OutboxStatus.FAILED);
+                log.error("财务事件 {} 投递失败 {} 次，已停止重试: {}", eventId, event.getAttempts(), error);
+            }
+            financeOutboxRepository.save(event);
+        });
+    }
+
+    /**
+     * 应用事件并标记完成
+     */
+    private void apply(List<FinanceOutbox> events) {
+        List<Receivable> receivables = events.stream()
+                .map(event -> {
+                    Receivable receivable = new Receivable();
+                    receivable.setOrderId(event.getOrderId());
+                    receivable.setCustomerId(event.getCustomerId());
+                    receivable.setAmountCents(event.getAmountCents());
+                    receivable.setPaidAmountCents(0L);
+                    receivable.setStatus(Receivable.ReceivableStatus.UNPAID);
+                    return receivable;
+                })
+                .collect(Collectors.toList());
+
+        int created = financeService.createReceivables(receivables);
+
+        financeOutboxRepository.markDone(
+                events.stream().map(FinanceOutbox::getId).collect(Collectors.toList()),
+                LocalDateTime.now());
+
+        log.info("投递财务事件 {} 条，新生成应收 {} 笔", events.size(), created);
+    }
+
+}
@@ -1,17 +1,19 @@
 package com.yourcompany.erp.finance.service;
 
+import com.yourcompany.erp.common.bizno.BizNoGenerator;
 import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.money.Money;
 import com.yourcompany.erp.customer.entity.Customer;
 import com.yourcompany.erp.customer.repository.CustomerRepository;
 import com.yourcompany.erp.finance.dto.*;
 import com.yourcompany.erp.finance.entity.Payment;
 import com.yourcompany.erp.finance.entity.PaymentReceivable;
 import com.yourcompany.erp.finance.entity.Receivable;
+import com.yourcompany.erp.finance.repository.BankImportLineRepository;
+import com.yourcompany.erp.finance.repository.CustomerLedgerRepository;
 import com.yourcompany.erp.finance.repository.PaymentReceivableRepository;
 import com.yourcompany.erp.finance.repository.PaymentRepository;
 import com.yourcompany.erp.finance.repository.ReceivableRepository;
-import com.yourcompany.erp.order.entity.Order;
-import com.yourcompany.erp.order.repository.OrderRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,22 +22,37 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import org.springframework.data.jpa.domain.Specification;
-import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import com.yourcompany.erp.finance.entity.Receivable.ReceivableStatus; // 导入内部枚举
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class FinanceService {
 
+    private static final String PAYMENT_NO_PREFIX = "PAY";
+
+    /** 自动核销每次取的未收应收条数 */
+    private static final int ALLOCATION_PAGE_SIZE = 50;
+
+    /** 自动核销键集翻页的起点（早于任何应收的创建时间） */
+    private static final LocalDateTime ALLOCATION_KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /** 账龄矩阵可用的排序字段（对应账龄段） */
+    private static final Set<String> AGE_SORT_KEYS = Set.of("total", "within15", "within30", "within60", "over60");
+
     @Autowired
     private ReceivableRepository receivableRepository;
 
@@ -49,25 +66,94 @@ public class FinanceService {
     private CustomerRepository customerRepository;
 
     @Autowired
-    private OrderRepository orderRepository;
+    private BizNoGenerator bizNoGenerator;
+
+    @Autowired
+    private PeriodCloseService periodCloseService;
+
+    @Autowired
+    private AccountStatementService accountStatementService;
+
+    @Autowired
+    private CustomerLedgerRepository customerLedgerRepository;
+
+    @Autowired
+    private BankImportLineRepository bankImportLineRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     /**
-     * 创建应收账款（订单创建时自动调用）
+     * 批量创建应收账款（财务出箱事件投递时调用）
+     * 已生成应收的订单直接跳过，重复投递不会重复记账
+     * @return 实际新建的应收数量
      */
     @Transactional
-    public void createReceivable(Long orderId, Long customerId, Double amount) {
-        Receivable receivable = new Receivable();
-        receivable.setOrderId(orderId);
-        receivable.setCustomerId(customerId);
-        receivable.setAmount(amount);
-        receivable.setPaidAmount(0.0);
-        receivable.setStatus(Receivable.ReceivableStatus.UNPAID);
-        receivableRepository.save(receivable);
-
-        // 更新客户欠款余额
-        updateCustomerBalance(customerId);
-
-        log.info("应收账款创建成功，订单: {}, 金额: {}", orderId, amount);
+    public int createReceivables(List<Receivable> receivables) {
+        Set<Long> orderIds = receivables.stream().map(Receivable::getOrderId).collect(Collectors.toSet());
+        Set<Long> existing = receivableRepository.findOrderIdsByOrderIdIn(orderIds);
+
+        // 过滤已存在的订单，同批内重复的订单也只保留一笔
+        Map<Long, Receivable> toCreate = new LinkedHashMap<>();
+        for (Receivable receivable : receivables) {
+            if (!existing.contains(receivable.getOrderId())) {
+                toCreate.putIfAbsent(receivable.getOrderId(), receivable);
+            }
+        }
+        if (toCreate.isEmpty()) {
+            return 0;
+        }
+        fillDueDates(toCreate.values());
+        receivableRepository.saveAll(toCreate.values());
+
+        // 每个客户一条更新：下单时的预占额度转为欠款，按客户ID顺序加锁
+        Map<Long, Long> deltas = new TreeMap<>();
+        toCreate.values().forEach(r -> deltas.merge(r.getCustomerId(), r.getAmountCents(), Long::sum));
+        deltas.forEach((customerId, cents) -> {
+            customerRepository.settleReservedCredit(customerId, cents);
+            refreshCustomerIfLoaded(customerId);
+        });
+        customerLedgerRepository.appendSales(toCreate.values().stream().map(Receivable::getId).collect(Collectors.toList()));
+
+        return toCreate.size();
+    }
+
+    /**
+     * 按下单日期 + 客户账期设置到期日（整批一条查询，投递延迟不影响到期日）
+     */
+    private void fillDueDates(Collection<Receivable> receivables) {
+        Map<Long, LocalDate> dueDates = receivableRepository.findDueDates(
+                        receivables.stream().map(Receivable::getOrderId).toArray(Long[]::new),
+                        receivables.stream().map(Receivable::getCustomerId).toArray(Long[]::new)).stream()
+                .collect(Collectors.toMap(ReceivableRepository.DueDate::getOrderId, ReceivableRepository.DueDate::getDueDate));
+        receivables.forEach(r -> r.setDueDate(dueDates.get(r.getOrderId())));
+    }
+
+    /**
+     * 释放订单预占的信用额度（订单在生成应收前取消）
+     */
+    @Transactional
+    public void releaseCredit(Long customerId, long amountCents) {
+        customerRepository.releaseCredit(customerId, amountCents);
+        refreshCustomerIfLoaded(customerId);
+    }
+
+    /**
+     * 作废订单的应收（订单取消时），已有收款的应收不能作废
+     */
+    @Transactional
+    public void voidReceivable(Long orderId) {
+        Receivable receivable = receivableRepository.findByOrderId(orderId).orElse(null);
+        if (receivable == null) {
+            return;
+        }
+        // 先更新客户余额（锁定客户行）再记作废分录，最后按未收款条件删除，删除失败整体回滚
+        adjustCustomerBalance(receivable.getCustomerId(), -receivable.getAmountCents());
+        customerLedgerRepository.appendVoid(receivable.getId());
+        if (receivableRepository.deleteUnpaidById(receivable.getId()) == 0) {
+            throw new BusinessException("订单已收款，无法取消");
+        }
+        log.info("订单 {} 的应收已作废，金额: {}", orderId, Money.toYuan(receivable.getAmountCents()));
     }
 
     /**
@@ -79,22 +165,26 @@ public class FinanceService {
         Receivable receivable = receivableRepository.findById(dto.getReceivableId())
                 .orElseThrow(() -> new BusinessException("应收账款不存在"));
 
+        if (!receivable.getCustomerId().equals(dto.getCustomerId())) {
+            throw new BusinessException("应收账款不属于该客户");
+        }
+
         if (receivable.getStatus() == Receivable.ReceivableStatus.PAID) {
             throw new BusinessException("该应收账款已收款");
         }
 
-        // 验证收款金额
-        double unpaidAmount = receivable.getAmount() - receivable.getPaidAmount();
-        if (dto.getAmount() > unpaidAmount) {
+        // 验证收款金额（按分比较）
+        long amountCents = Money.toCents(dto.getAmount());
+        if (amountCents > receivable.getAmountCents() - receivable.getPaidAmountCents()) {
             throw new BusinessException("收款金额超过未收金额");
         }
 
         // 创建收款记录
         Payment payment = new Payment();
-        payment.setPaymentNo(generatePaymentNo());
+        payment.setPaymentNo(bizNoGenerator.next(PAYMENT_NO_PREFIX));
         payment.setCustomerId(dto.getCustomerId());
-        payment.setAmount(dto.getAmount());
-        payment.setAllocatedAmount(dto.getAmount());  // 简单核销，全部分配
+        payment.setAmountCents(amountCents);
+        payment.setAllocatedAmountCents(amountCents);  // 简单核销，全部分配
         payment.setPaymentMethod(dto.getPaymentMethod());
         payment.setRemark(dto.getRemark());
         payment = paymentRepository.save(payment);
@@ -103,14 +193,15 @@ public class FinanceService {
         PaymentReceivable pr = new PaymentReceivable();
         pr.setPaymentId(payment.getId());
         pr.setReceivableId(dto.getReceivableId());
-        pr.setAmount(dto.getAmount());
+        pr.setAmountCents(amountCents);
         paymentReceivableRepository.save(pr);
 
         // 更新应收账款
-        updateReceivableStatus(receivable.getId());
+        allocateReceivable(receivable.getId(), amountCents);
 
-        // 更新客户欠款余额
-        updateCustomerBalance(dto.getCustomerId());
+        // 增量更新客户欠款余额，记收款和核销分录
+        adjustCustomerBalance(dto.getCustomerId(), -amountCents);
+        customerLedgerRepository.appendPayment(payment.getId());
 
         log.info("收款记录创建成功，客户: {}, 金额: {}", dto.getCustomerId(), dto.getAmount());
 
@@ -122,55 +213,47 @@ public class FinanceService {
      */
     @Transactional
     public PaymentVO recordBatchPayment(PaymentBatchDTO dto) {
-        // 1. 验证核销金额总和
-        double totalAllocated = dto.getAllocations().stream()
-                .mapToDouble(PaymentBatchDTO.AllocationItem::getAmount)
-                .sum();
+        // 1. 验证核销金额总和（按分精确比较），同时合并同一应收的多行核销
+        long totalCents = 0L;
+        Map<Long, Long> amounts = new TreeMap<>();
+        for (PaymentBatchDTO.AllocationItem item : dto.getAllocations()) {
+            long cents = Money.toCents(item.getAmount());
+            totalCents += cents;
+            amounts.merge(item.getReceivableId(), cents, Long::sum);
+        }
 
-        if (Math.abs(totalAllocated - dto.getTotalAmount()) > 0.01) {
+        if (totalCents != Money.toCents(dto.getTotalAmount())) {
             throw new BusinessException("核销金额总和与收款金额不一致");
         }
 
-        // 2. 验证每笔应收
-        for (PaymentBatchDTO.AllocationItem item : dto.getAllocations()) {
-            Receivable receivable = receivableRepository.findById(item.getReceivableId())
-                    .orElseThrow(() -> new BusinessException("应收账款 " + item.getReceivableId() + " 不存在"));
+        // 2. 一次查询全部应收并验证
+        Map<Long, Receivable> receivables = receivableRepository.findAllById(amounts.keySet()).stream()
+                .collect(Collectors.toMap(Receivable::getId, Function.identity()));
+
+        for (Map.Entry<Long, Long> entry : amounts.entrySet()) {
+            Receivable receivable = receivables.get(entry.getKey());
+            if (receivable == null) {
+                throw new BusinessException("应收账款 " + entry.getKey() + " 不存在");
+            }
 
             if (!receivable.getCustomerId().equals(dto.getCustomerId())) {
                 throw new BusinessException("应收账款不属于该客户");
             }
 
-            double unpaidAmount = receivable.getAmount() - receivable.getPaidAmount();
-            if (item.getAmount() > unpaidAmount) {
+            long unpaidCents = receivable.getAmountCents() - receivable.getPaidAmountCents();
+            if (entry.getValue() > unpaidCents) {
                 throw new BusinessException("核销金额超过应收未收金额");
             }
         }
 
-        // 3. 创建收款记录
-        Payment payment = new Payment();
-        payment.setPaymentNo(generatePaymentNo());
-        payment.setCustomerId(dto.getCustomerId());
-        payment.setAmount(dto.getTotalAmount());
-        payment.setAllocatedAmount(totalAllocated);
-        payment.setPaymentMethod(dto.getPaymentMethod());
-        payment.setRemark(dto.getRemark());
-        payment = paymentRepository.save(payment);
+        // 3. 入账
+        Payment payment = commitAllocations(dto.getCustomerId(), amounts, dto.getPaymentMethod(), dto.getRemark());
 
-        // 4. 创建核销记录并更新应收
-        for (PaymentBatchDTO.AllocationItem item : dto.getAllocations()) {
-            PaymentReceivable pr = new PaymentReceivable();
-            pr.setPaymentId(payment.getId());
-            pr.setReceivableId(item.getReceivableId());
-            pr.setAmount(item.getAmount());
-            paymentReceivableRepository.save(pr);
-
-            // 更新应收状态
-            updateReceivableStatus(item.getReceivableId());
+        // 4. 登记银行流水（同一流水并发或重复入账时整体回滚）
+        if (dto.getBankRef() != null && bankImportLineRepository.insertIfAbsent(dto.getBankRef(), payment.getId()) == 0) {
+            throw new BusinessException("银行流水已入账");
         }
 
-        // 5. 更新客户欠款余额
-        updateCustomerBalance(dto.getCustomerId());
-
         log.info("批量核销成功，客户: {}, 收款金额: {}, 核销 {} 笔应收",
                 dto.getCustomerId(), dto.getTotalAmount(), dto.getAllocations().size());
 
@@ -178,75 +261,154 @@ public class FinanceService {
     }
 
     /**
-     * 更新应收账款状态（根据核销记录计算）
+     * 批量入账多笔收款（同一事务，任一笔失败整批回滚）
      */
-    private void updateReceivableStatus(Long receivableId) {
-        Receivable receivable = receivableRepository.findById(receivableId)
-                .orElseThrow(() -> new BusinessException("应收账款不存在"));
+    @Transactional
+    public void recordBatchPayments(List<PaymentBatchDTO> payments) {
+        payments.forEach(this::recordBatchPayment);
+    }
+
+    /**
+     * 自动核销：按应收先后顺序（先进先出）核销收款，可只试算不入账
+     * 收款金额超过未收总额时，只按核销金额入账，超出部分作为未核销金额返回（不入账，由调用方退回或另行处理）
+     */
+    @Transactional
+    public PaymentAllocationPlanVO autoAllocatePayment(PaymentAutoDTO dto) {
+        customerRepository.findById(dto.getCustomerId())
+                .orElseThrow(() -> new BusinessException("客户不存在"));
 
-        // 计算已收金额
-        Double allocatedAmount = paymentReceivableRepository.sumAllocatedByReceivableId(receivableId);
-        receivable.setPaidAmount(allocatedAmount);
-
-        // 更新状态
-        if (allocatedAmount.equals(receivable.getAmount())) {
-            receivable.setStatus(Receivable.ReceivableStatus.PAID);
-        } else if (allocatedAmount > 0) {
-            receivable.setStatus(Receivable.ReceivableStatus.PARTIAL);
-        } else {
-            receivable.setStatus(Receivable.ReceivableStatus.UNPAID);
+        // 1. 按先后顺序逐页取未收应收，覆盖收款金额即停止
+        PaymentAllocationPlanVO plan = new PaymentAllocationPlanVO();
+        plan.setCustomerId(dto.getCustomerId());
+        plan.setAmount(dto.getAmount());
+        plan.setDryRun(dto.isDryRun());
+
+        long amountCents = Money.toCents(dto.getAmount());
+        long remaining = amountCents;
+        Map<Long, Long> amounts = new TreeMap<>();
+        LocalDateTime afterTime = ALLOCATION_KEYSET_START;
+        long afterId = 0L;
+        while (remaining > 0) {
+            List<ReceivableRepository.OpenReceivable> page = receivableRepository.findOpenForAllocation(
+                    dto.getCustomerId(), afterTime, afterId, ALLOCATION_PAGE_SIZE);
+            for (ReceivableRepository.OpenReceivable open : page) {
+                long unpaidCents = open.getUnpaidCents();
+                if (unpaidCents <= 0) {
+                    continue;
+                }
+                long cents = Math.min(unpaidCents, remaining);
+                plan.getAllocations().add(new PaymentAllocationPlanVO.AllocationLine(open.getReceivableId(), open.getOrderNo(),
+                        open.getCreateTime(), Money.toYuan(unpaidCents), Money.toYuan(cents)));
+                amounts.put(open.getReceivableId(), cents);
+                remaining -= cents;
+                if (remaining == 0) {
+                    break;
+                }
+            }
+            if (page.size() < ALLOCATION_PAGE_SIZE) {
+                break;
+            }
+            ReceivableRepository.OpenReceivable last = page.get(page.size() - 1);
+            afterTime = last.getCreateTime();
+            afterId = last.getReceivableId();
         }
 
-        receivableRepository.save(receivable);
+        if (amounts.isEmpty()) {
+            throw new BusinessException("该客户没有未收应收");
+        }
+        plan.setAllocatedAmount(Money.toYuan(amountCents - remaining));
+        plan.setUnallocatedAmount(Money.toYuan(remaining));
+
+        // 2. 试算直接返回方案
+        if (dto.isDryRun()) {
+            return plan;
+        }
+
+        // 3. 入账（与批量核销同一路径，收款金额记为核销金额）
+        Payment payment = commitAllocations(dto.getCustomerId(), amounts, dto.getPaymentMethod(), dto.getRemark());
+        plan.setPayment(convertPaymentToVO(payment));
+
+        log.info("自动核销成功，客户: {}, 收款金额: {}, 核销 {} 笔应收",
+                dto.getCustomerId(), dto.getAmount(), amounts.size());
+        return plan;
     }
 
     /**
-     * 获取应收账款列表（分页）
+     * 核销入账：创建收款记录（金额等于核销总额），批量插入核销记录，一条语句累加应收已收金额，增量更新客户欠款
+     * @param amounts 应收ID -> 核销金额（分，应收ID不重复）
      */
-    // --- 改造点 2：重写此方法以支持筛选 ---
-    public Page<ReceivableVO> getReceivableList(Long customerId, String status, Pageable pageable) {
+    private Payment commitAllocations(Long customerId, Map<Long, Long> amounts, String paymentMethod, String remark) {
+        long totalCents = 0L;
+        for (long cents : amounts.values()) {
+            totalCents += cents;
+        }
 
-        Specification<Receivable> spec = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
+        // 创建收款记录
+        Payment payment = new Payment();
+        payment.setPaymentNo(bizNoGenerator.next(PAYMENT_NO_PREFIX));
+        payment.setCustomerId(customerId);
+        payment.setAmountCents(totalCents);
+        payment.setAllocatedAmountCents(totalCents);
+        payment.setPaymentMethod(paymentMethod);
+        payment.setRemark(remark);
+        payment = paymentRepository.save(payment);
 
-            // 按客户ID查询
-            if (customerId != null) {
-                predicates.add(cb.equal(root.get("customerId"), customerId));
-            }
+        // 批量插入核销记录
+        paymentReceivableRepository.insertAll(payment.getId(), amounts);
 
-            // 按状态查询
-            if (status != null && !status.isBlank()) {
-                try {
-                    ReceivableStatus receivableStatus = ReceivableStatus.valueOf(status.toUpperCase());
-                    predicates.add(cb.equal(root.get("status"), receivableStatus));
-                } catch (IllegalArgumentException e) {
-                    log.warn("无效的应收状态: {}", status);
-                }
-            }
+        // 一条语句累加全部应收的已收金额（并发核销导致超额时整体回滚）
+        int allocated = receivableRepository.allocateBatch(
+                amounts.keySet().toArray(Long[]::new), amounts.values().toArray(Long[]::new));
+        if (allocated != amounts.size()) {
+            throw new BusinessException("核销金额超过应收未收金额");
+        }
 
-            return cb.and(predicates.toArray(new Predicate[0]));
-        };
+        // 增量更新客户欠款余额，记收款和核销分录
+        adjustCustomerBalance(customerId, -totalCents);
+        customerLedgerRepository.appendPayment(payment.getId());
+        return payment;
+    }
 
-        return receivableRepository.findAll(spec, pageable)
-                .map(this::convertReceivableToVO);
+    /**
+     * 核销应收（一条条件 UPDATE 累加已收金额并推导状态，并发超额核销时失败）
+     */
+    private void allocateReceivable(Long receivableId, long amountCents) {
+        if (receivableRepository.allocate(receivableId, amountCents) == 0) {
+            throw new BusinessException("应收账款 " + receivableId + " 核销金额超过未收金额");
+        }
+    }
+
+    /**
+     * 获取应收账款列表（分页）
+     */
+    // --- 改造点 2：重写此方法以支持筛选 ---
+    public Page<ReceivableVO> getReceivableList(Long customerId, String status, Pageable pageable) {
+        // 按状态查询
+        ReceivableStatus receivableStatus = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                receivableStatus = ReceivableStatus.valueOf(status.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("无效的应收状态: {}", status);
+            }
+        }
+
+        // 一条关联查询带出订单编号和客户名称
+        return receivableRepository.findReceivableVOs(customerId, receivableStatus, pageable);
     }
 
     /**
      * 获取客户应收列表
      */
     public List<ReceivableVO> getCustomerReceivables(Long customerId) {
-        return receivableRepository.findByCustomerId(customerId).stream()
-                .map(this::convertReceivableToVO)
-                .collect(Collectors.toList());
+        return receivableRepository.findReceivableVOsByCustomerId(customerId);
     }
 
     /**
      * 获取收款记录列表
      */
     public List<PaymentVO> getPaymentList(Long customerId) {
-        return paymentRepository.findByCustomerIdOrderByCreateTimeDesc(customerId).stream()
-                .map(this::convertPaymentToVO)
-                .collect(Collectors.toList());
+        return convertPaymentsToVO(paymentRepository.findByCustomerIdOrderByCreateTimeDesc(customerId));
     }
 
     /**
@@ -256,221 +418,250 @@ public class FinanceService {
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new BusinessException("客户不存在"));
 
-        Double totalDebt = receivableRepository.sumUnpaidByCustomerId(customerId);
-        Double availableCredit = customer.getCreditLimit() - totalDebt;
+        long totalDebtCents = receivableRepository.sumUnpaidCentsByCustomerId(customerId);
+        Double totalDebt = Money.toYuan(totalDebtCents);
+        Double availableCredit = Money.toYuan(customer.getCreditLimitCents() - totalDebtCents
+                - customer.getCreditReservedCents());
 
         return new CustomerDebtVO(
                 customer.getId(),
                 customer.getName(),
-                customer.getCreditLimit(),
+                Money.toYuan(customer.getCreditLimitCents()),
                 totalDebt,
                 availableCredit
         );
     }
 
     /**
-     * 账龄分析
+     * 账龄分析（按逾期天数分组，未到期的计入 15 天内）
      */
     public ReceivableAgeVO analyzeReceivableAge(Long customerId) {
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new BusinessException("客户不存在"));
 
-        List<Receivable> receivables = receivableRepository.findByCustomerId(customerId).stream()
-                .filter(r -> r.getStatus() != Receivable.ReceivableStatus.PAID)
-                .collect(Collectors.toList());
+        List<ReceivableRepository.AgeBuckets> rows = receivableRepository.aggregateAge(
+                LocalDate.now(), new Long[]{customerId}, null, "total", 1);
+        if (!rows.isEmpty()) {
+            return toAgeVO(rows.get(0));
+        }
 
+        // 没有未收应收
         ReceivableAgeVO vo = new ReceivableAgeVO();
         vo.setCustomerId(customer.getId());
         vo.setCustomerName(customer.getName());
-
-        LocalDateTime now = LocalDateTime.now();
-
-        for (Receivable receivable : receivables) {
-            double unpaidAmount = receivable.getAmount() - receivable.getPaidAmount();
-            long days = ChronoUnit.DAYS.between(receivable.getCreateTime(), now);
-
-            if (days <= 15) {
-                vo.setWithin15Days(vo.getWithin15Days() + unpaidAmount);
-            } else if (days <= 30) {
-                vo.setWithin30Days(vo.getWithin30Days() + unpaidAmount);
-            } else if (days <= 60) {
-                vo.setWithin60Days(vo.getWithin60Days() + unpaidAmount);
-            } else {
-                vo.setOver60Days(vo.getOver60Days() + unpaidAmount);
-            }
-        }
-
-        vo.calculateTotal();
         return vo;
     }
 
     /**
-     * 生成月度对账单
+     * 历史账龄：按客户明细账回放到指定日期零点的未收应收分布
      */
-    public AccountStatementVO generateMonthlyStatement(Long customerId, int year, int month) {
+    public ReceivableAgeVO analyzeReceivableAgeAt(Long customerId, LocalDate asOf) {
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new BusinessException("客户不存在"));
 
-        LocalDate startDate = LocalDate.of(year, month, 1);
-        LocalDate endDate = startDate.plusMonths(1).minusDays(1);
+        CustomerLedgerRepository.LedgerAge age = customerLedgerRepository.replayAge(customerId, asOf.atStartOfDay());
 
-        AccountStatementVO vo = new AccountStatementVO();
+        ReceivableAgeVO vo = new ReceivableAgeVO();
         vo.setCustomerId(customer.getId());
         vo.setCustomerName(customer.getName());
-        vo.setStartDate(startDate);
-        vo.setEndDate(endDate);
-
-        // 计算期初余额（本月1日之前的未收款）
-        vo.setOpeningBalance(calculateBalanceBeforeDate(customerId, startDate));
-
-        // 本期发生额
-        List<AccountStatementVO.StatementDetail> details = new ArrayList<>();
-        double runningBalance = vo.getOpeningBalance();
-
-        // 查询本月应收
-        List<Receivable> receivables = receivableRepository.findByCustomerId(customerId).stream()
-                .filter(r -> {
-                    LocalDate createDate = r.getCreateTime().toLocalDate();
-                    return !createDate.isBefore(startDate) && !createDate.isAfter(endDate);
-                })
-                .collect(Collectors.toList());
-
-        for (Receivable receivable : receivables) {
-            runningBalance += receivable.getAmount();
-            vo.setPeriodSales(vo.getPeriodSales() + receivable.getAmount());
-
-            Order order = orderRepository.findById(receivable.getOrderId()).orElse(null);
-            details.add(new AccountStatementVO.StatementDetail(
-                    receivable.getCreateTime().toLocalDate(),
-                    "销售",
-                    order != null ? order.getOrderNo() : "",
-                    receivable.getAmount(),
-                    0.0,
-                    runningBalance
-            ));
-        }
+        vo.setCents(age.getWithin15Cents(), age.getWithin30Cents(), age.getWithin60Cents(), age.getOver60Cents());
+        return vo;
+    }
 
-        // 查询本月收款
-        List<Payment> payments = paymentRepository.findByCustomerIdOrderByCreateTimeDesc(customerId).stream()
-                .filter(p -> {
-                    LocalDate payDate = p.getCreateTime().toLocalDate();
-                    return !payDate.isBefore(startDate) && !payDate.isAfter(endDate);
-                })
-                .collect(Collectors.toList());
+    /**
+     * 补记明细账启用前的历史分录（可重复执行），期间锁定全部客户行
+     * @return 补记的分录数
+     */
+    @Transactional
+    public int backfillLedger() {
+        customerLedgerRepository.lockAllCustomers();
+        int inserted = customerLedgerRepository.backfill();
+        log.info("客户明细账补记 {} 条历史分录", inserted);
+        return inserted;
+    }
 
-        for (Payment payment : payments) {
-            runningBalance -= payment.getAmount();
-            vo.setPeriodPayments(vo.getPeriodPayments() + payment.getAmount());
-
-            details.add(new AccountStatementVO.StatementDetail(
-                    payment.getCreateTime().toLocalDate(),
-                    "收款",
-                    payment.getPaymentNo(),
-                    0.0,
-                    payment.getAmount(),
-                    runningBalance
-            ));
+    /**
+     * 全部客户账龄矩阵（一条聚合查询，只返回有未收应收的客户）
+     * @param customerIds 指定客户，为空时按等级筛选
+     * @param level       客户等级，为空时不限
+     * @param sortBy      排序字段：total / within15 / within30 / within60 / over60，降序
+     * @param limit       返回条数上限
+     */
+    public List<ReceivableAgeVO> analyzeReceivableAgeMatrix(List<Long> customerIds, String level, String sortBy, int limit) {
+        String sortKey = sortBy == null ? "over60" : sortBy;
+        if (!AGE_SORT_KEYS.contains(sortKey)) {
+            throw new BusinessException(400, "不支持的排序字段: " + sortBy);
+        }
+        if (limit < 1) {
+            throw new BusinessException(400, "返回条数必须大于0");
         }
 
-        // 按日期排序
-        details.sort((a, b) -> a.getDate().compareTo(b.getDate()));
-        vo.setDetails(details);
+        // 指定客户时忽略等级
+        Long[] ids = customerIds == null ? new Long[0] : customerIds.toArray(Long[]::new);
+        Customer.CustomerLevel customerLevel = null;
+        if (ids.length == 0 && level != null && !level.isBlank()) {
+            try {
+                customerLevel = Customer.CustomerLevel.valueOf(level.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new BusinessException(400, "无效的客户等级: " + level);
+            }
+        }
 
-        // 期末余额
-        vo.setClosingBalance(vo.getOpeningBalance() + vo.getPeriodSales() - vo.getPeriodPayments());
+        // 排序和截取都在数据库完成
+        return receivableRepository.aggregateAge(LocalDate.now(), ids,
+                        customerLevel == null ? null : customerLevel.name(), sortKey, limit).stream()
+                .map(this::toAgeVO)
+                .collect(Collectors.toList());
+    }
 
+    /**
+     * 账龄聚合行（分）转 VO
+     */
+    private ReceivableAgeVO toAgeVO(ReceivableRepository.AgeBuckets row) {
+        ReceivableAgeVO vo = new ReceivableAgeVO();
+        vo.setCustomerId(row.getCustomerId());
+        vo.setCustomerName(row.getCustomerName());
+        vo.setCents(row.getWithin15Cents(), row.getWithin30Cents(), row.getWithin60Cents(), row.getOver60Cents());
         return vo;
     }
 
     /**
-     * 计算指定日期之前的余额
+     * 生成月度对账单
      */
-    private Double calculateBalanceBeforeDate(Long customerId, LocalDate date) {
-        List<Receivable> receivables = receivableRepository.findByCustomerId(customerId).stream()
-                .filter(r -> r.getCreateTime().toLocalDate().isBefore(date))
-                .collect(Collectors.toList());
+    public AccountStatementVO generateMonthlyStatement(Long customerId, int year, int month) {
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new BusinessException("客户不存在"));
+        return buildStatements(List.of(customer), year, month).get(0);
+    }
 
-        double totalReceivable = receivables.stream()
-                .mapToDouble(Receivable::getAmount)
-                .sum();
+    /**
+     * 批量生成一批客户的月度对账单（批量对账单任务按分片调用），不存在的客户忽略
+     * 客户、期初余额、本期明细各一条查询，不随客户数增加查询次数
+     */
+    public List<AccountStatementVO> generateMonthlyStatements(List<Long> customerIds, int year, int month) {
+        return buildStatements(customerRepository.findAllById(customerIds), year, month);
+    }
 
-        List<Payment> payments = paymentRepository.findByCustomerIdOrderByCreateTimeDesc(customerId).stream()
-                .filter(p -> p.getCreateTime().toLocalDate().isBefore(date))
-                .collect(Collectors.toList());
+    private List<AccountStatementVO> buildStatements(List<Customer> customers, int year, int month) {
+        LocalDate startDate = LocalDate.of(year, month, 1);
+        LocalDate endDate = startDate.plusMonths(1).minusDays(1);
 
-        double totalPayment = payments.stream()
-                .mapToDouble(Payment::getAmount)
-                .sum();
+        // 期初余额（上月月末快照 + 快照之后的发生额）
+        Map<Long, Long> openings = periodCloseService.balancesAt(
+                customers.stream().map(Customer::getId).collect(Collectors.toList()), startDate);
 
-        return totalReceivable - totalPayment;
+        // 本期明细（数据库按时间顺序计算滚动余额）
+        Map<Long, List<AccountStatementVO.StatementDetail>> lines =
+                accountStatementService.loadLines(openings, startDate, endDate);
+
+        List<AccountStatementVO> statements = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            AccountStatementVO vo = new AccountStatementVO();
+            vo.setCustomerId(customer.getId());
+            vo.setCustomerName(customer.getName());
+            vo.setStartDate(startDate);
+            vo.setEndDate(endDate);
+
+            long openingCents = openings.get(customer.getId());
+            vo.setOpeningBalance(Money.toYuan(openingCents));
+
+            List<AccountStatementVO.StatementDetail> details = lines.getOrDefault(customer.getId(), new ArrayList<>());
+            long salesCents = 0L;
+            long paymentsCents = 0L;
+            for (AccountStatementVO.StatementDetail detail : details) {
+                salesCents += Money.toCents(detail.getDebit());
+                paymentsCents += Money.toCents(detail.getCredit());
+            }
+            vo.setPeriodSales(Money.toYuan(salesCents));
+            vo.setPeriodPayments(Money.toYuan(paymentsCents));
+            vo.setDetails(details);
+
+            // 期末余额
+            vo.setClosingBalance(Money.toYuan(openingCents + salesCents - paymentsCents));
+            statements.add(vo);
+        }
+        return statements;
     }
 
     /**
-     * 更新客户欠款余额
+     * 增量调整客户欠款余额
+     * 只执行一条原子 UPDATE；若当前事务已加载该客户，刷新实体以免读到旧余额
+     * @param deltaCents 增量（分）
      */
-    private void updateCustomerBalance(Long customerId) {
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new BusinessException("客户不存在"));
-
-        Double totalDebt = receivableRepository.sumUnpaidByCustomerId(customerId);
-        customer.setBalance(totalDebt);
-        customerRepository.save(customer);
+    private void adjustCustomerBalance(Long customerId, long deltaCents) {
+        customerRepository.addBalance(customerId, deltaCents);
+        refreshCustomerIfLoaded(customerId);
     }
 
     /**
-     * 生成收款编号
+     * 原子 UPDATE 之后，若当前事务已加载该客户则刷新实体
      */
-    private String generatePaymentNo() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        return "PAY" + timestamp + String.format("%04d", (int)(Math.random() * 10000));
+    private void refreshCustomerIfLoaded(Long customerId) {
+        Customer loaded = entityManager.getReference(Customer.class, customerId);
+        if (entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(loaded)) {
+            entityManager.refresh(loaded);
+        }
     }
 
     /**
-     * 转换应收为 VO
+     * 按应收明细重算客户欠款余额（修复数据用，日常记账走增量更新）
+     * @param customerId 客户ID，为空时重算全部客户
+     * @return 更新的客户数
      */
-    private ReceivableVO convertReceivableToVO(Receivable receivable) {
-        ReceivableVO vo = new ReceivableVO();
-        BeanUtils.copyProperties(receivable, vo);
-
-        // 查询订单编号
-        orderRepository.findById(receivable.getOrderId()).ifPresent(order -> {
-            vo.setOrderNo(order.getOrderNo());
-        });
-
-        // 查询客户名称
-        customerRepository.findById(receivable.getCustomerId()).ifPresent(customer -> {
-            vo.setCustomerName(customer.getName());
-        });
-
-        // 计算未收金额
-        vo.setUnpaidAmount(receivable.getAmount() - receivable.getPaidAmount());
-
-        return vo;
+    @Transactional
+    public int repairCustomerBalance(Long customerId) {
+        if (customerId == null) {
+            int updated = customerRepository.recalculateAllBalances();
+            log.info("已重算全部客户欠款余额，共 {} 个客户", updated);
+            return updated;
+        }
+        if (customerRepository.recalculateBalance(customerId) == 0) {
+            throw new BusinessException("客户不存在");
+        }
+        log.info("已重算客户 {} 欠款余额", customerId);
+        return 1;
     }
 
     /**
      * 转换收款为 VO
      */
     private PaymentVO convertPaymentToVO(Payment payment) {
-        PaymentVO vo = new PaymentVO();
-        BeanUtils.copyProperties(payment, vo);
-
-        // 查询客户名称
-        customerRepository.findById(payment.getCustomerId()).ifPresent(customer -> {
-            vo.setCustomerName(customer.getName());
-        });
+        return convertPaymentsToVO(List.of(payment)).get(0);
+    }
 
-        // 查询关联的订单编号（如果是批量核销，显示第一个）
-        List<PaymentReceivable> allocations = paymentReceivableRepository.findByPaymentId(payment.getId());
-        if (!allocations.isEmpty()) {
-            receivableRepository.findById(allocations.get(0).getReceivableId()).ifPresent(receivable -> {
-                orderRepository.findById(receivable.getOrderId()).ifPresent(order -> {
-                    vo.setOrderNo(order.getOrderNo());
-                });
-            });
+    /**
+     * 批量转换收款为 VO（客户名称、核销订单编号各一次查询，与收款条数无关）
+     */
+    private List<PaymentVO> convertPaymentsToVO(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return List.of();
         }
 
-        return vo;
+        // 查询客户名称
+        Set<Long> customerIds = payments.stream().map(Payment::getCustomerId).collect(Collectors.toSet());
+        Map<Long, String> customerNames = customerRepository.findAllById(customerIds).stream()
+                .collect(Collectors.toMap(Customer::getId, Customer::getName));
+
+        // 查询关联的订单编号（按核销顺序）
+        List<Long> paymentIds = payments.stream().map(Payment::getId).collect(Collectors.toList());
+        Map<Long, List<String>> orderNos = paymentReceivableRepository.findOrderNosByPaymentIdIn(paymentIds).stream()
+                .collect(Collectors.groupingBy(PaymentReceivableRepository.PaymentOrderNo::getPaymentId,
+                        Collectors.mapping(PaymentReceivableRepository.PaymentOrderNo::getOrderNo, Collectors.toList())));
+
+        return payments.stream().map(payment -> {
+            PaymentVO vo = new PaymentVO();
+            BeanUtils.copyProperties(payment, vo);
+            vo.setAmount(Money.toYuan(payment.getAmountCents()));
+            vo.setCustomerName(customerNames.get(payment.getCustomerId()));
+
+            // 批量核销时 orderNo 显示第一个
+            List<String> paymentOrderNos = orderNos.getOrDefault(payment.getId(), List.of());
+            vo.setOrderNos(paymentOrderNos);
+            if (!paymentOrderNos.isEmpty()) {
+                vo.setOrderNo(paymentOrderNos.get(0));
+            }
+            return vo;
+        }).collect(Collectors.toList());
     }
 
 }
@@ -0,0 +1,102 @@
+package com.yourcompany.erp.finance.service;
+
+import com.yourcompany.erp.finance.dto.OverdueScanVO;
+import com.yourcompany.erp.finance.entity.ScanCheckpoint;
+import com.yourcompany.erp.finance.repository.ReceivableRepository;
+import com.yourcompany.erp.finance.repository.ScanCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 逾期扫描（按应收ID分批遍历未收应收：补齐到期日、标记逾期、计提滞纳金）
+ * 每批一个事务，与断点一起提交，中断后从断点继续
+ */
+@Slf4j
+@Service
+public class OverdueScanService {
+
+    private static final String CHECKPOINT = "overdue";
+
+    @Autowired
+    private ReceivableRepository receivableRepository;
+
+    @Autowired
+    private ScanCheckpointRepository checkpointRepository;
+
+    @Value("${erp.overdue.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${erp.overdue.late-fee-rate:0.0005}")
+    private double lateFeeRate;
+
+    /**
+     * 扫描下一批未收应收
+     * 业务日期与断点记录的不同时从头开始新一轮；本轮已扫描完时直接返回
+     * @return 本批扫描的应收数，0 表示本轮已扫描完
+     */
+    @Transactional
+    public int scanChunk(LocalDate asOf) {
+        checkpointRepository.init(CHECKPOINT);
+        ScanCheckpoint checkpoint = checkpointRepository.findByNameForUpdate(CHECKPOINT).orElseThrow();
+
+        if (!asOf.equals(checkpoint.getScanDate())) {
+            checkpoint.setScanDate(asOf);
+            checkpoint.setLastId(0L);
+            checkpoint.setFinished(false);
+            checkpoint.setScanned(0L);
+            checkpoint.setNewlyOverdue(0L);
+            checkpoint.setLateFeeAccrued(0L);
+        } else if (checkpoint.getFinished()) {
+            return 0;
+        }
+
+        List<Long> ids = receivableRepository.findUnpaidIdsAfter(checkpoint.getLastId(), chunkSize);
+        if (ids.isEmpty()) {
+            checkpoint.setFinished(true);
+            checkpointRepository.save(checkpoint);
+            log.info("逾期扫描完成，业务日期: {}, 扫描 {} 笔，新逾期 {} 笔，计提滞纳金 {} 笔", asOf,
+                    checkpoint.getScanned(), checkpoint.getNewlyOverdue(), checkpoint.getLateFeeAccrued());
+            return 0;
+        }
+
+        Long[] idArray = ids.toArray(new Long[0]);
+        receivableRepository.fillDueDates(idArray);
+        int overdue = receivableRepository.markOverdue(idArray, asOf);
+        int accrued = receivableRepository.accrueLateFees(idArray, asOf, lateFeeRate);
+
+        // 上面的批量更新会清空持久化上下文，断点显式保存
+        checkpoint.setLastId(ids.get(ids.size() - 1));
+        checkpoint.setScanned(checkpoint.getScanned() + ids.size());
+        checkpoint.setNewlyOverdue(checkpoint.getNewlyOverdue() + overdue);
+        checkpoint.setLateFeeAccrued(checkpoint.getLateFeeAccrued() + accrued);
+        checkpointRepository.save(checkpoint);
+
+        log.debug("逾期扫描至应收 {}，本批 {} 笔，新逾期 {} 笔", checkpoint.getLastId(), ids.size(), overdue);
+        return ids.size();
+    }
+
+    /**
+     * 查询扫描进度
+     */
+    @Transactional(readOnly = true)
+    public OverdueScanVO getProgress() {
+        OverdueScanVO vo = new OverdueScanVO();
+        checkpointRepository.findById(CHECKPOINT).ifPresent(checkpoint -> {
+            vo.setScanDate(checkpoint.getScanDate());
+            vo.setLastReceivableId(checkpoint.getLastId());
+            vo.setFinished(checkpoint.getFinished());
+            vo.setScanned(checkpoint.getScanned());
+            vo.setNewlyOverdue(checkpoint.getNewlyOverdue());
+            vo.setLateFeeAccrued(checkpoint.getLateFeeAccrued());
+            vo.setUpdateTime(checkpoint.getUpdateTime());
+        });
+        return vo;
+    }
+
+}
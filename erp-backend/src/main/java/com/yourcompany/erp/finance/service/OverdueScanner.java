@@ -0,0 +1,42 @@
+package com.yourcompany.erp.finance.service;
+
+import com.yourcompany.erp.finance.dto.OverdueScanVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 逾期扫描定时任务
+ * 定期检查当天这一轮是否已扫描完，没有就从断点继续，所以重启后会自动接着扫
+ */
+@Slf4j
+@Component
+public class OverdueScanner {
+
+    @Autowired
+    private OverdueScanService overdueScanService;
+
+    @Scheduled(fixedDelayString = "${erp.overdue.poll-interval-ms:600000}")
+    public void scanToday() {
+        try {
+            scan(LocalDate.now());
+        } catch (Exception e) {
+            log.error("逾期扫描失败，下次从断点继续: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 扫描到本轮结束
+     */
+    public OverdueScanVO scan(LocalDate asOf) {
+        int scanned;
+        do {
+            scanned = overdueScanService.scanChunk(asOf);
+        } while (scanned > 0);
+        return overdueScanService.getProgress();
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.yourcompany.erp.finance.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+
+/**
+ * 每月初自动月结上个月
+ */
+@Slf4j
+@Component
+public class PeriodCloseScheduler {
+
+    @Autowired
+    private PeriodCloseService periodCloseService;
+
+    @Scheduled(cron = "${erp.period-close.cron:0 30 1 1 * *}")
+    public void closeLastMonth() {
+        try {
+            periodCloseService.closePeriod(YearMonth.now().minusMonths(1));
+        } catch (Exception e) {
+            log.error("自动月结失败: {}", e.getMessage(), e);
+        }
+    }
+
+}
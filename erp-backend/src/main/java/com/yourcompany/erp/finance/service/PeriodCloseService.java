@@ -0,0 +1,64 @@
+package com.yourcompany.erp.finance.service;
+
+import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.money.Money;
+import com.yourcompany.erp.finance.repository.CustomerBalanceSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 月结服务：按客户明细账生成月末余额快照，任意日期余额 = 最近快照 + 快照之后的分录
+ */
+@Slf4j
+@Service
+public class PeriodCloseService {
+
+    @Autowired
+    private CustomerBalanceSnapshotRepository snapshotRepository;
+
+    /**
+     * 月结指定月份（只能结已结束的月份）
+     * 重结某个月份后，其后已结的月份需要依次重结
+     * @return 生成的快照数
+     */
+    @Transactional
+    public int closePeriod(YearMonth period) {
+        if (!period.isBefore(YearMonth.now())) {
+            throw new BusinessException(400, "只能月结已结束的月份");
+        }
+        int closed = snapshotRepository.closePeriod(period.atDay(1), period.plusMonths(1).atDay(1).atStartOfDay());
+        log.info("{} 月结完成，生成 {} 个客户余额快照", period, closed);
+        return closed;
+    }
+
+    /**
+     * 客户在指定日期零点的余额（累计应收 - 累计收款）
+     * 取该日期之前最近一次月末快照，只累加快照之后的明细账分录
+     */
+    @Transactional(readOnly = true)
+    public double balanceAt(Long customerId, LocalDate date) {
+        return Money.toYuan(balancesAt(List.of(customerId), date).get(customerId));
+    }
+
+    /**
+     * 一批客户在指定日期零点的余额（分），一条查询
+     * @return 客户ID -> 余额（分），每个传入的客户都有值
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> balancesAt(Collection<Long> customerIds, LocalDate date) {
+        return snapshotRepository.findBalancesAt(customerIds.toArray(Long[]::new), date.minusMonths(1), date.atStartOfDay())
+                .stream()
+                .collect(Collectors.toMap(CustomerBalanceSnapshotRepository.CustomerBalance::getCustomerId,
+                        CustomerBalanceSnapshotRepository.CustomerBalance::getBalanceCents));
+    }
+
+}
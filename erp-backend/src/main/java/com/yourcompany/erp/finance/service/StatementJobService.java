@@ -0,0 +1,231 @@
+package com.yourcompany.erp.finance.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.customer.repository.CustomerRepository;
+import com.yourcompany.erp.finance.dto.AccountStatementVO;
+import com.yourcompany.erp.finance.dto.StatementJobVO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量对账单任务：按客户分片并行生成月度对账单，写入一个 zip 归档
+ * 工作线程数有上限，避免月末批量任务挤占在线交易的数据库连接
+ * 已结束的任务保留一段时间供查询进度，过期后定时清理（归档文件仍保留在输出目录）
+ */
+@Slf4j
+@Service
+public class StatementJobService {
+
+    @Autowired
+    private FinanceService financeService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${erp.statement-job.output-dir:statements}")
+    private String outputDir;
+
+    @Value("${erp.statement-job.partition-size:200}")
+    private int partitionSize;
+
+    @Value("${erp.statement-job.retention-minutes:1440}")
+    private long retentionMinutes;
+
+    private final ExecutorService workers;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> new Thread(r, "statement-job"));
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicReference<String> runningJobId = new AtomicReference<>();
+
+    public StatementJobService(@Value("${erp.statement-job.concurrency:4}") int concurrency) {
+        AtomicInteger threadNo = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(concurrency,
+                r -> new Thread(r, "statement-worker-" + threadNo.incrementAndGet()));
+    }
+
+    /**
+     * 启动批量对账单任务（同一时间只运行一个任务）
+     */
+    public StatementJobVO start(YearMonth period) {
+        if (period.isAfter(YearMonth.now())) {
+            throw new BusinessException(400, "账期不能晚于当前月份");
+        }
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        if (!runningJobId.compareAndSet(null, jobId)) {
+            throw new BusinessException(409, "已有批量对账单任务在运行: " + runningJobId.get());
+        }
+
+        Job job = new Job(jobId, period);
+        job.outputFile = Paths.get(outputDir, "statements-" + period + "-" + jobId + ".zip").toAbsolutePath();
+        jobs.put(jobId, job);
+        coordinator.execute(() -> run(job));
+        log.info("批量对账单任务 {} 已启动，账期: {}", jobId, period);
+        return job.toVO();
+    }
+
+    /**
+     * 查询任务进度
+     */
+    public StatementJobVO getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException(404, "任务不存在");
+        }
+        return job.toVO();
+    }
+
+    /**
+     * 定时清理已结束超过保留时间的任务
+     */
+    @Scheduled(fixedDelayString = "${erp.statement-job.evict-interval-ms:600000}")
+    public void evictFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        int before = jobs.size();
+        jobs.values().removeIf(job -> job.endTime != null && !job.endTime.isAfter(cutoff));
+        int evicted = before - jobs.size();
+        if (evicted > 0) {
+            log.debug("清理已结束的批量对账单任务 {} 个", evicted);
+        }
+    }
+
+    private void run(Job job) {
+        try {
+            List<Long> customerIds = customerRepository.findAllIds();
+            job.total = customerIds.size();
+            Files.createDirectories(job.outputFile.getParent());
+
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(job.outputFile))) {
+                // 按客户分片，每个分片一个任务，由有界线程池执行
+                List<CompletableFuture<Void>> partitions = new ArrayList<>();
+                for (int from = 0; from < customerIds.size(); from += partitionSize) {
+                    List<Long> partition = customerIds.subList(from, Math.min(from + partitionSize, customerIds.size()));
+                    partitions.add(CompletableFuture.runAsync(() -> generate(job, partition, zip), workers));
+                }
+                CompletableFuture.allOf(partitions.toArray(new CompletableFuture[0])).join();
+            }
+
+            job.status = "DONE";
+            log.info("批量对账单任务 {} 完成，客户 {} 个，写出 {} 份，失败 {} 个，输出: {}",
+                    job.jobId, job.total, job.written.get(), job.failed.get(), job.outputFile);
+        } catch (Exception e) {
+            job.status = "FAILED";
+            job.errorMessage = e.getMessage();
+            log.error("批量对账单任务 {} 失败", job.jobId, e);
+        } finally {
+            // 先释放运行标记再记结束时间：查到结束时间时即可启动下一个任务
+            runningJobId.compareAndSet(job.jobId, null);
+            job.endTime = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * 生成一个分片内客户的对账单（整个分片一次取数），逐份写入归档
+     */
+    private void generate(Job job, List<Long> customerIds, ZipOutputStream zip) {
+        List<AccountStatementVO> statements;
+        try {
+            statements = financeService.generateMonthlyStatements(
+                    customerIds, job.period.getYear(), job.period.getMonthValue());
+        } catch (Exception e) {
+            // 取数失败，整个分片记为失败
+            job.failed.addAndGet(customerIds.size());
+            job.processed.addAndGet(customerIds.size());
+            log.warn("客户 {} - {} 对账单生成失败: {}", customerIds.get(0), customerIds.get(customerIds.size() - 1), e.getMessage());
+            return;
+        }
+
+        for (AccountStatementVO statement : statements) {
+            if (statement.getOpeningBalance() != 0 || !statement.getDetails().isEmpty()) {
+                try {
+                    byte[] json = objectMapper.writeValueAsBytes(statement);
+                    synchronized (zip) {
+                        zip.putNextEntry(new ZipEntry("statement-" + statement.getCustomerId() + ".json"));
+                        zip.write(json);
+                        zip.closeEntry();
+                    }
+                } catch (IOException e) {
+                    // 归档写失败，整个任务失败
+                    throw new IllegalStateException("写入对账单归档失败: " + e.getMessage(), e);
+                }
+                job.written.incrementAndGet();
+            }
+        }
+        // 分片内已删除的客户不生成对账单，也计入已处理
+        job.processed.addAndGet(customerIds.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * 任务运行状态
+     */
+    private static final class Job {
+
+        private final String jobId;
+        private final YearMonth period;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger written = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile int total;
+        private volatile String status = "RUNNING";
+        private volatile String errorMessage;
+        private volatile LocalDateTime endTime;
+        private Path outputFile;
+
+        Job(String jobId, YearMonth period) {
+            this.jobId = jobId;
+            this.period = period;
+        }
+
+        StatementJobVO toVO() {
+            StatementJobVO vo = new StatementJobVO();
+            vo.setJobId(jobId);
+            vo.setPeriod(period.toString());
+            vo.setStatus(status);
+            vo.setTotalCustomers(total);
+            vo.setProcessedCustomers(processed.get());
+            vo.setWrittenStatements(written.get());
+            vo.setFailedCustomers(failed.get());
+            vo.setOutputFile(outputFile.toString());
+            vo.setErrorMessage(errorMessage);
+            vo.setStartTime(startTime);
+            vo.setEndTime(endTime);
+            return vo;
+        }
+    }
+
+}
@@ -1,9 +1,13 @@
 package com.yourcompany.erp.order.controller;
 
+import com.yourcompany.erp.common.response.CursorPage;
 import com.yourcompany.erp.common.response.Result;
 import com.yourcompany.erp.order.entity.Order;
+import com.yourcompany.erp.order.dto.OrderBatchDTO;
 import com.yourcompany.erp.order.dto.OrderVO;
+import com.yourcompany.erp.order.service.OrderExportService;
 import com.yourcompany.erp.order.service.OrderService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -13,6 +17,9 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 /**
  * 管理端 - 订单管理
  */
@@ -25,6 +32,9 @@ public class AdminOrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private OrderExportService orderExportService;
+
     /**
      * 获取订单列表（分页）
      */
@@ -46,6 +56,50 @@ public class AdminOrderController {
         return Result.success(orders);
     }
 
+    /**
+     * 获取订单列表（游标分页）
+     */
+    @GetMapping("/cursor")
+    @Operation(summary = "获取订单列表（游标分页）", description = "按创建时间倒序翻页，不统计总数，适合大数据量深翻页")
+    @Parameter(name = "cursor", description = "上一页返回的 nextCursor，第一页不传")
+    @Parameter(name = "size", description = "每页数量（1-100）")
+    @Parameter(name = "orderNo", description = "订单编号（模糊查询）")
+    @Parameter(name = "status", description = "订单状态 (PENDING, APPROVED, SHIPPED, COMPLETED, CANCELLED)")
+    public Result<CursorPage<OrderVO>> getOrderListByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String orderNo,
+            @RequestParam(required = false) String status) {
+        CursorPage<OrderVO> orders = orderService.getOrderListByCursor(orderNo, status, cursor, size);
+        return Result.success(orders);
+    }
+
+    /**
+     * 导出订单（流式输出，含明细）
+     */
+    @GetMapping("/export")
+    @Operation(summary = "导出订单", description = "按筛选条件流式导出订单及明细，支持 CSV、NDJSON")
+    @Parameter(name = "format", description = "导出格式 (csv, ndjson)")
+    @Parameter(name = "orderNo", description = "订单编号（模糊查询）")
+    @Parameter(name = "status", description = "订单状态 (PENDING, APPROVED, SHIPPED, COMPLETED, CANCELLED)")
+    public void exportOrders(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String orderNo,
+            @RequestParam(required = false) String status,
+            HttpServletResponse response) throws IOException {
+        log.info("导出订单，格式: {}", format);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        if ("ndjson".equalsIgnoreCase(format)) {
+            response.setContentType("application/x-ndjson");
+            response.setHeader("Content-Disposition", "attachment; filename=orders.ndjson");
+            orderExportService.exportNdjson(orderNo, status, response.getWriter());
+        } else {
+            response.setContentType("text/csv");
+            response.setHeader("Content-Disposition", "attachment; filename=orders.csv");
+            orderExportService.exportCsv(orderNo, status, response.getWriter());
+        }
+    }
+
     /**
      * 获取订单详情
      */
@@ -89,4 +143,45 @@ public class AdminOrderController {
         return Result.success("订单已完成", null);
     }
 
+    /**
+     * 取消订单
+     */
+	@Operation(summary = "取消订单", description = "取消待审核订单，归还库存并释放预占的信用额度")
+    @PostMapping("/{id}/cancel")
+    public Result<Void> cancelOrder(@PathVariable Long id) {
+        log.info("取消订单: {}", id);
+        orderService.cancelOrder(id);
+        return Result.success("订单已取消", null);
+    }
+
+    /**
+     * 批量审核
+     */
+	@Operation(summary = "批量审核", description = "按ID列表或筛选条件批量审核，非待审核订单自动跳过")
+    @PostMapping("/batch/approve")
+    public Result<Integer> batchApprove(@RequestBody OrderBatchDTO dto) {
+        int count = orderService.batchTransition(Order.OrderStatus.APPROVED, dto);
+        return Result.success("已审核 " + count + " 个订单", count);
+    }
+
+    /**
+     * 批量发货
+     */
+	@Operation(summary = "批量发货", description = "按ID列表或筛选条件批量发货，未审核订单自动跳过")
+    @PostMapping("/batch/ship")
+    public Result<Integer> batchShip(@RequestBody OrderBatchDTO dto) {
+        int count = orderService.batchTransition(Order.OrderStatus.SHIPPED, dto);
+        return Result.success("已发货 " + count + " 个订单", count);
+    }
+
+    /**
+     * 批量完成
+     */
+	@Operation(summary = "批量完成", description = "按ID列表或筛选条件批量完成，未发货订单自动跳过")
+    @PostMapping("/batch/complete")
+    public Result<Integer> batchComplete(@RequestBody OrderBatchDTO dto) {
+        int count = orderService.batchTransition(Order.OrderStatus.COMPLETED, dto);
+        return Result.success("已完成 " + count + " 个订单", count);
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.yourcompany.erp.order.controller;
 
+import com.yourcompany.erp.common.idempotency.IdempotencyStore;
 import com.yourcompany.erp.common.response.Result;
 import com.yourcompany.erp.common.utils.UserContext;
 import com.yourcompany.erp.order.dto.OrderDTO;
@@ -14,6 +15,8 @@ import com.yourcompany.erp.user.entity.User;
 import com.yourcompany.erp.user.service.UserService;
 import java.util.List;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 /**
@@ -25,23 +28,38 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @RequestMapping("/app/order")
 public class AppOrderController {
 
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
     @Autowired
     private OrderService orderService;
 	
 	@Autowired  // <-- 增加这一行
 	private UserService userService; // <-- 增加这一行
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     /**
      * 创建订单
      */
     @PostMapping
 	@Operation(summary = "创建订单", description = "客户下单，自动扣减库存、生成应收、检查信用额度")
-    public Result<OrderVO> createOrder(@Valid @RequestBody OrderDTO dto) {
+    @Parameter(name = "Idempotency-Key", in = ParameterIn.HEADER, description = "幂等键（可选，同一个键重试时返回首次下单结果）")
+    public Result<OrderVO> createOrder(@Valid @RequestBody OrderDTO dto,
+                                       @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         // 从 Token 中获取当前客户ID
         Long userId = UserContext.getUserId();
         
         log.info("客户 {} 创建订单", userId);
-        OrderVO vo = orderService.createOrder(dto);
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return Result.success(orderService.createOrder(dto));
+        }
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new BusinessException(400, "幂等键过长");
+        }
+        // 幂等键只保存订单ID，重试时按ID重新查询订单
+        OrderVO vo = idempotencyStore.execute("order:" + userId + ":" + idempotencyKey, dto,
+                () -> orderService.createOrder(dto), OrderVO::getId, orderService::getOrderDetail);
         return Result.success(vo);
     }
 
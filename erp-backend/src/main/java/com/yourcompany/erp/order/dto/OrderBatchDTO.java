@@ -0,0 +1,19 @@
+package com.yourcompany.erp.order.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 订单批量操作请求 DTO
+ */
+@Data
+public class OrderBatchDTO {
+
+    private List<Long> ids;  // 订单ID列表（优先）
+
+    private Boolean byFilter;  // 为 true 且未传 ids 时，处理所有符合筛选条件的订单
+
+    private String orderNo;  // 订单编号（模糊查询，按筛选处理时使用）
+
+}
@@ -1,5 +1,6 @@
 package com.yourcompany.erp.order.entity;
 
+import com.yourcompany.erp.common.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
@@ -12,7 +13,10 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "\"order\"")  // PostgreSQL 中 order 是关键字
+@Table(name = "\"order\"", indexes = {  // PostgreSQL 中 order 是关键字
+        @Index(name = "idx_order_customer_time", columnList = "customer_id, create_time"),  // 客户订单列表
+        @Index(name = "idx_order_create_time_id", columnList = "create_time, id")  // 游标分页
+})
 public class Order {
 
     @Id
@@ -29,7 +33,8 @@ public class Order {
     private String customerName;  // 客户名称（冗余，方便查询）
 
     @Column(name = "total_amount", nullable = false)
-    private Double totalAmount;  // 订单总金额
+    @Convert(converter = MoneyConverter.class)
+    private Long totalAmountCents;  // 订单总金额（分）
 
     @Column(nullable = false, length = 20)
     @Enumerated(EnumType.STRING)
@@ -55,6 +60,9 @@ public class Order {
     @Column(name = "completed_time")
     private LocalDateTime completedTime;  // 完成时间
 
+    @Column(name = "cancelled_time")
+    private LocalDateTime cancelledTime;  // 取消时间
+
     /**
      * 订单状态枚举
      */
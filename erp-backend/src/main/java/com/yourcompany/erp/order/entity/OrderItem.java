@@ -1,5 +1,6 @@
 package com.yourcompany.erp.order.entity;
 
+import com.yourcompany.erp.common.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -8,7 +9,9 @@ import lombok.Data;
  */
 @Data
 @Entity
-@Table(name = "order_item")
+@Table(name = "order_item", indexes = {
+        @Index(name = "idx_order_item_order_id", columnList = "order_id")  // 按订单批量加载明细
+})
 public class OrderItem {
 
     @Id
@@ -24,13 +27,15 @@ public class OrderItem {
     @Column(name = "product_name", length = 100)
     private String productName;  // 商品名称（冗余）
 
-    @Column(nullable = false)
-    private Double price;  // 成交单价（根据客户等级确定）
+    @Column(name = "price", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long priceCents;  // 成交单价（分，根据客户等级确定）
 
     @Column(nullable = false)
     private Integer quantity;  // 数量
 
-    @Column(nullable = false)
-    private Double subtotal;  // 小计（price * quantity）
+    @Column(name = "subtotal", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Long subtotalCents;  // 小计（分，price * quantity）
 
 }
@@ -2,8 +2,12 @@ package com.yourcompany.erp.order.repository;
 
 import com.yourcompany.erp.order.entity.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,6 +18,40 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
      */
     List<OrderItem> findByOrderId(Long orderId);
 
+    /**
+     * 批量查询多个订单的明细（列表页一次查询）
+     */
+    List<OrderItem> findByOrderIdInOrderByIdAsc(Collection<Long> orderIds);
+
+    /**
+     * 批量插入订单明细（一条多行 INSERT，单价、小计以分传入）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO order_item (order_id, product_id, product_name, price, quantity, subtotal) " +
+                   "SELECT :orderId, t.product_id, t.product_name, t.price_cents / 100.0, t.quantity, t.subtotal_cents / 100.0 " +
+                   "FROM unnest(CAST(:productIds AS bigint[]), CAST(:productNames AS varchar[]), " +
+                   "CAST(:priceCents AS bigint[]), CAST(:quantities AS integer[]), CAST(:subtotalCents AS bigint[])) " +
+                   "AS t(product_id, product_name, price_cents, quantity, subtotal_cents)",
+           nativeQuery = true)
+    int insertBatch(@Param("orderId") Long orderId,
+                    @Param("productIds") Long[] productIds,
+                    @Param("productNames") String[] productNames,
+                    @Param("priceCents") Long[] priceCents,
+                    @Param("quantities") Integer[] quantities,
+                    @Param("subtotalCents") Long[] subtotalCents);
+
+    /**
+     * 批量保存某订单的明细
+     */
+    default void insertAll(Long orderId, List<OrderItem> items) {
+        insertBatch(orderId,
+                items.stream().map(OrderItem::getProductId).toArray(Long[]::new),
+                items.stream().map(OrderItem::getProductName).toArray(String[]::new),
+                items.stream().map(OrderItem::getPriceCents).toArray(Long[]::new),
+                items.stream().map(OrderItem::getQuantity).toArray(Integer[]::new),
+                items.stream().map(OrderItem::getSubtotalCents).toArray(Long[]::new));
+    }
+
     /**
      * 删除订单明细
      */
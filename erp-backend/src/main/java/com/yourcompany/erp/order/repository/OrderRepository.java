@@ -2,12 +2,15 @@ package com.yourcompany.erp.order.repository;
 
 import com.yourcompany.erp.order.entity.Order;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 //支持动态查询
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,4 +38,61 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
     @Query("SELECT COUNT(o) FROM Order o WHERE o.customerId = :customerId")
     Long countByCustomerId(@Param("customerId") Long customerId);
 
+    /**
+     * 审核订单（仅待审核状态），按ID
+     * @return 实际审核的订单数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'APPROVED', o.approvedTime = :now, o.updateTime = :now " +
+           "WHERE o.id IN :ids AND o.status = 'PENDING'")
+    int approveByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 审核订单（仅待审核状态），按订单号筛选
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'APPROVED', o.approvedTime = :now, o.updateTime = :now " +
+           "WHERE o.status = 'PENDING' AND o.orderNo LIKE :orderNo")
+    int approveByOrderNoLike(@Param("orderNo") String orderNo, @Param("now") LocalDateTime now);
+
+    /**
+     * 发货（仅已审核状态），按ID
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'SHIPPED', o.shippedTime = :now, o.updateTime = :now " +
+           "WHERE o.id IN :ids AND o.status = 'APPROVED'")
+    int shipByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 发货（仅已审核状态），按订单号筛选
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'SHIPPED', o.shippedTime = :now, o.updateTime = :now " +
+           "WHERE o.status = 'APPROVED' AND o.orderNo LIKE :orderNo")
+    int shipByOrderNoLike(@Param("orderNo") String orderNo, @Param("now") LocalDateTime now);
+
+    /**
+     * 完成订单（仅已发货状态），按ID
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'COMPLETED', o.completedTime = :now, o.updateTime = :now " +
+           "WHERE o.id IN :ids AND o.status = 'SHIPPED'")
+    int completeByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 完成订单（仅已发货状态），按订单号筛选
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'COMPLETED', o.completedTime = :now, o.updateTime = :now " +
+           "WHERE o.status = 'SHIPPED' AND o.orderNo LIKE :orderNo")
+    int completeByOrderNoLike(@Param("orderNo") String orderNo, @Param("now") LocalDateTime now);
+
+    /**
+     * 取消订单（仅待审核状态）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'CANCELLED', o.cancelledTime = :now, o.updateTime = :now " +
+           "WHERE o.id IN :ids AND o.status = 'PENDING'")
+    int cancelByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
 }
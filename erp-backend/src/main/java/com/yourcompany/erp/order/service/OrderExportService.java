@@ -0,0 +1,221 @@
+package com.yourcompany.erp.order.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.erp.order.dto.OrderVO;
+import com.yourcompany.erp.order.entity.Order;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单导出（流式读取订单及明细，边读边写，内存占用与数据量无关）
+ */
+@Slf4j
+@Service
+public class OrderExportService {
+
+    private static final String CSV_HEADER = "订单编号,客户ID,客户名称,订单金额,状态,备注,创建时间,商品ID,商品名称,单价,数量,小计\n";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${erp.export.fetch-size:500}")
+    private int fetchSize;
+
+    /**
+     * 导出为 CSV（每个订单明细一行）
+     */
+    @Transactional(readOnly = true)
+    public void exportCsv(String orderNo, String status, Writer writer) {
+        write(writer, "\uFEFF" + CSV_HEADER);  // BOM，Excel 直接打开不乱码
+        long rows = query(orderNo, status, rs -> {
+            StringBuilder line = new StringBuilder(128);
+            line.append(csv(rs.getString("order_no"))).append(',')
+                .append(rs.getLong("customer_id")).append(',')
+                .append(csv(rs.getString("customer_name"))).append(',')
+                .append(rs.getDouble("total_amount")).append(',')
+                .append(rs.getString("status")).append(',')
+                .append(csv(rs.getString("remark"))).append(',')
+                .append(toText(rs.getTimestamp("create_time"))).append(',');
+            if (rs.getObject("item_id") != null) {
+                line.append(rs.getLong("product_id")).append(',')
+                    .append(csv(rs.getString("product_name"))).append(',')
+                    .append(rs.getDouble("price")).append(',')
+                    .append(rs.getInt("quantity")).append(',')
+                    .append(rs.getDouble("subtotal"));
+            } else {
+                line.append(",,,,");
+            }
+            write(writer, line.append('\n').toString());
+        });
+        flush(writer);
+        log.info("订单 CSV 导出完成，共 {} 行", rows);
+    }
+
+    /**
+     * 导出为 NDJSON（每个订单一行 JSON，含明细）
+     */
+    @Transactional(readOnly = true)
+    public void exportNdjson(String orderNo, String status, Writer writer) {
+        OrderVO[] current = new OrderVO[1];
+        long[] orders = new long[1];
+
+        query(orderNo, status, rs -> {
+            long orderId = rs.getLong("id");
+            // 结果按订单ID排序，订单ID变化时输出上一个订单
+            if (current[0] == null || current[0].getId() != orderId) {
+                writeJson(writer, current[0]);
+                current[0] = readOrder(rs);
+                orders[0]++;
+            }
+            if (rs.getObject("item_id") != null) {
+                current[0].getItems().add(readItem(rs));
+            }
+        });
+        writeJson(writer, current[0]);
+        flush(writer);
+
+        log.info("订单 NDJSON 导出完成，共 {} 个订单", orders[0]);
+    }
+
+    /**
+     * 按筛选条件游标读取订单及明细
+     * @return 读取的行数
+     */
+    private long query(String orderNo, String status, RowWriter rowWriter) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT o.id, o.order_no, o.customer_id, o.customer_name, o.total_amount, o.status, o.remark, " +
+                "o.create_time, o.approved_time, o.shipped_time, o.completed_time, " +
+                "i.id AS item_id, i.product_id, i.product_name, i.price, i.quantity, i.subtotal " +
+                "FROM \"order\" o LEFT JOIN order_item i ON i.order_id = o.id WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+
+        // 与订单列表相同的筛选条件
+        if (orderNo != null && !orderNo.isBlank()) {
+            sql.append(" AND o.order_no LIKE ?");
+            args.add("%" + orderNo + "%");
+        }
+        if (status != null && !status.isBlank()) {
+            try {
+                args.add(Order.OrderStatus.valueOf(status.toUpperCase()).name());
+                sql.append(" AND o.status = ?");
+            } catch (IllegalArgumentException e) {
+                log.warn("无效的订单状态: {}", status);
+            }
+        }
+        sql.append(" ORDER BY o.id, i.id");
+
+        // 只进游标 + fetchSize，PostgreSQL 在事务内按批拉取，不会一次加载全部结果
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+
+        long[] rows = new long[1];
+        jdbcTemplate.query(sql.toString(), rs -> {
+            rowWriter.write(rs);
+            rows[0]++;
+        }, args.toArray());
+        return rows[0];
+    }
+
+    private OrderVO readOrder(ResultSet rs) throws SQLException {
+        OrderVO vo = new OrderVO();
+        vo.setId(rs.getLong("id"));
+        vo.setOrderNo(rs.getString("order_no"));
+        vo.setCustomerId(rs.getLong("customer_id"));
+        vo.setCustomerName(rs.getString("customer_name"));
+        vo.setTotalAmount(rs.getDouble("total_amount"));
+        vo.setStatus(Order.OrderStatus.valueOf(rs.getString("status")));
+        vo.setRemark(rs.getString("remark"));
+        vo.setCreateTime(toLocalDateTime(rs.getTimestamp("create_time")));
+        vo.setApprovedTime(toLocalDateTime(rs.getTimestamp("approved_time")));
+        vo.setShippedTime(toLocalDateTime(rs.getTimestamp("shipped_time")));
+        vo.setCompletedTime(toLocalDateTime(rs.getTimestamp("completed_time")));
+        vo.setItems(new ArrayList<>());
+        return vo;
+    }
+
+    private OrderVO.OrderItemVO readItem(ResultSet rs) throws SQLException {
+        OrderVO.OrderItemVO item = new OrderVO.OrderItemVO();
+        item.setId(rs.getLong("item_id"));
+        item.setProductId(rs.getLong("product_id"));
+        item.setProductName(rs.getString("product_name"));
+        item.setPrice(rs.getDouble("price"));
+        item.setQuantity(rs.getInt("quantity"));
+        item.setSubtotal(rs.getDouble("subtotal"));
+        return item;
+    }
+
+    private void writeJson(Writer writer, OrderVO vo) {
+        if (vo == null) {
+            return;
+        }
+        try {
+            write(writer, objectMapper.writeValueAsString(vo) + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(Writer writer, String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush(Writer writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * CSV 字段转义
+     */
+    private String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private String toText(Timestamp timestamp) {
+        return timestamp == null ? "" : timestamp.toLocalDateTime().toString().replace('T', ' ');
+    }
+
+    private LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    /**
+     * 逐行处理结果集
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException;
+    }
+
+}
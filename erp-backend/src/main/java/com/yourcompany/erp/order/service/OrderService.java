@@ -1,9 +1,13 @@
 package com.yourcompany.erp.order.service;
 
+import com.yourcompany.erp.common.bizno.BizNoGenerator;
 import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.money.Money;
+import com.yourcompany.erp.common.response.CursorPage;
 import com.yourcompany.erp.customer.entity.Customer;
 import com.yourcompany.erp.customer.repository.CustomerRepository;
-import com.yourcompany.erp.finance.service.FinanceService;
+import com.yourcompany.erp.finance.service.FinanceOutboxService;
+import com.yourcompany.erp.order.dto.OrderBatchDTO;
 import com.yourcompany.erp.order.dto.OrderDTO;
 import com.yourcompany.erp.order.dto.OrderVO;
 import com.yourcompany.erp.order.entity.Order;
@@ -18,23 +22,35 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import org.springframework.data.jpa.domain.Specification;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.Predicate;
 import java.util.ArrayList;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class OrderService {
 
+    private static final String ORDER_NO_PREFIX = "ORD";
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;  // 游标分页每页数量上限
+
     @Autowired
     private OrderRepository orderRepository;
 
@@ -51,7 +67,13 @@ public class OrderService {
     private ProductService productService;
 
     @Autowired
-    private FinanceService financeService;
+    private FinanceOutboxService financeOutboxService;
+
+    @Autowired
+    private BizNoGenerator bizNoGenerator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     /**
      * 创建订单
@@ -62,89 +84,94 @@ public class OrderService {
         Customer customer = customerRepository.findById(dto.getCustomerId())
                 .orElseThrow(() -> new BusinessException("客户不存在"));
 
-        // 2. 计算订单金额并验证库存
-        List<OrderItem> items = new ArrayList<>();
-        double totalAmount = 0.0;
-
+        // 2. 一次性加载全部商品（同一商品多行时合并数量）
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
         for (OrderDTO.OrderItemDTO itemDto : dto.getItems()) {
-            Product product = productRepository.findById(itemDto.getProductId())
-                    .orElseThrow(() -> new BusinessException("商品 " + itemDto.getProductId() + " 不存在"));
-
-            // 检查库存
-            if (product.getStock() < itemDto.getQuantity()) {
-                throw new BusinessException("商品 " + product.getName() + " 库存不足");
-            }
-
-            // 根据客户等级确定价格
-            double price = customer.getLevel() == Customer.CustomerLevel.VIP 
-                    ? product.getVipPrice() 
-                    : product.getNormalPrice();
-
-            double subtotal = price * itemDto.getQuantity();
-            totalAmount += subtotal;
+            quantities.merge(itemDto.getProductId(), itemDto.getQuantity(), Integer::sum);
+        }
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
 
-            // 构建订单明细
-            OrderItem item = new OrderItem();
-            item.setProductId(product.getId());
-            item.setProductName(product.getName());
-            item.setPrice(price);
-            item.setQuantity(itemDto.getQuantity());
-            item.setSubtotal(subtotal);
-            items.add(item);
+        // 3. 计算订单金额并验证库存
+        List<OrderItem> items = priceItems(customer, dto.getItems(), products, quantities);
+        long totalCents = 0L;
+        for (OrderItem item : items) {
+            totalCents += item.getSubtotalCents();
         }
 
-        // 3. 检查信用额度
-        double currentDebt = customer.getBalance();
-        if (currentDebt + totalAmount > customer.getCreditLimit()) {
+        // 4. 预占信用额度（一条条件 UPDATE：欠款 + 已预占 + 本单不超过额度才成功，并发下单不会超额）
+        if (customerRepository.reserveCredit(customer.getId(), totalCents) == 0) {
             throw new BusinessException("订单金额超出信用额度");
         }
+        entityManager.refresh(customer);  // 只刷新客户，不清空整个持久化上下文
 
-        // 4. 创建订单
+        // 5. 创建订单
         Order order = new Order();
-        order.setOrderNo(generateOrderNo());
+        order.setOrderNo(bizNoGenerator.next(ORDER_NO_PREFIX));
         order.setCustomerId(customer.getId());
         order.setCustomerName(customer.getName());
-        order.setTotalAmount(totalAmount);
+        order.setTotalAmountCents(totalCents);
         order.setStatus(Order.OrderStatus.PENDING);
         order.setRemark(dto.getRemark());
         order = orderRepository.save(order);
 
-        // 5. 保存订单明细
-        for (OrderItem item : items) {
-            item.setOrderId(order.getId());
-            orderItemRepository.save(item);
-        }
+        // 6. 批量保存订单明细
+        orderItemRepository.insertAll(order.getId(), items);
 
-        // 6. 扣减库存
-        for (OrderDTO.OrderItemDTO itemDto : dto.getItems()) {
-            productService.reduceStock(itemDto.getProductId(), itemDto.getQuantity());
-        }
+        // 7. 扣减库存（一条语句，按商品ID顺序加锁）
+        productService.reduceStockBatch(quantities);
 
-        // 7. 生成应收账款
-        financeService.createReceivable(order.getId(), customer.getId(), totalAmount);
+        // 8. 登记生成应收事件（后台异步投递时预占额度转为欠款，不在下单事务内重算客户欠款）
+        financeOutboxService.enqueueReceivable(order.getId(), customer.getId(), totalCents);
 
-        log.info("订单 {} 创建成功，客户: {}, 金额: {}", order.getOrderNo(), customer.getName(), totalAmount);
+        log.info("订单 {} 创建成功，客户: {}, 金额: {}", order.getOrderNo(), customer.getName(), Money.toYuan(totalCents));
 
         return getOrderDetail(order.getId());
     }
 
+    /**
+     * 按客户等级计价并验证库存，生成订单明细（不访问数据库）
+     */
+    List<OrderItem> priceItems(Customer customer, List<OrderDTO.OrderItemDTO> itemDtos,
+                               Map<Long, Product> products, Map<Long, Integer> quantities) {
+        List<OrderItem> items = new ArrayList<>(itemDtos.size());
+        for (OrderDTO.OrderItemDTO itemDto : itemDtos) {
+            Product product = products.get(itemDto.getProductId());
+            if (product == null) {
+                throw new BusinessException("商品 " + itemDto.getProductId() + " 不存在");
+            }
+
+            // 检查库存（按合并后的数量，分片商品在扣减时校验）
+            if (!product.isStockSharded() && product.getStock() < quantities.get(product.getId())) {
+                throw new BusinessException("商品 " + product.getName() + " 库存不足");
+            }
+
+            // 根据客户等级确定价格（按分计算小计）
+            long priceCents = customer.getLevel() == Customer.CustomerLevel.VIP 
+                    ? product.getVipPriceCents() 
+                    : product.getNormalPriceCents();
+
+            // 构建订单明细
+            OrderItem item = new OrderItem();
+            item.setProductId(product.getId());
+            item.setProductName(product.getName());
+            item.setPriceCents(priceCents);
+            item.setQuantity(itemDto.getQuantity());
+            item.setSubtotalCents(priceCents * itemDto.getQuantity());
+            items.add(item);
+        }
+        return items;
+    }
+
     /**
      * 审核订单
      */
     @Transactional
     public void approveOrder(Long orderId) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new BusinessException("订单不存在"));
-
-        if (order.getStatus() != Order.OrderStatus.PENDING) {
-            throw new BusinessException("订单状态不正确，无法审核");
+        if (orderRepository.approveByIds(List.of(orderId), LocalDateTime.now()) == 0) {
+            throw transitionError(orderId, "订单状态不正确，无法审核");
         }
-
-        order.setStatus(Order.OrderStatus.APPROVED);
-        order.setApprovedTime(LocalDateTime.now());
-        orderRepository.save(order);
-
-        log.info("订单 {} 已审核", order.getOrderNo());
+        log.info("订单 {} 已审核", orderId);
     }
 
     /**
@@ -152,18 +179,10 @@ public class OrderService {
      */
     @Transactional
     public void shipOrder(Long orderId) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new BusinessException("订单不存在"));
-
-        if (order.getStatus() != Order.OrderStatus.APPROVED) {
-            throw new BusinessException("订单未审核，无法发货");
+        if (orderRepository.shipByIds(List.of(orderId), LocalDateTime.now()) == 0) {
+            throw transitionError(orderId, "订单未审核，无法发货");
         }
-
-        order.setStatus(Order.OrderStatus.SHIPPED);
-        order.setShippedTime(LocalDateTime.now());
-        orderRepository.save(order);
-
-        log.info("订单 {} 已发货", order.getOrderNo());
+        log.info("订单 {} 已发货", orderId);
     }
 
     /**
@@ -171,18 +190,68 @@ public class OrderService {
      */
     @Transactional
     public void completeOrder(Long orderId) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new BusinessException("订单不存在"));
+        if (orderRepository.completeByIds(List.of(orderId), LocalDateTime.now()) == 0) {
+            throw transitionError(orderId, "订单未发货，无法完成");
+        }
+        log.info("订单 {} 已完成", orderId);
+    }
 
-        if (order.getStatus() != Order.OrderStatus.SHIPPED) {
-            throw new BusinessException("订单未发货，无法完成");
+    /**
+     * 取消订单（仅待审核状态）：归还库存，释放预占额度或作废未收款的应收
+     */
+    @Transactional
+    public void cancelOrder(Long orderId) {
+        if (orderRepository.cancelByIds(List.of(orderId), LocalDateTime.now()) == 0) {
+            throw transitionError(orderId, "只有待审核订单可以取消");
         }
 
-        order.setStatus(Order.OrderStatus.COMPLETED);
-        order.setCompletedTime(LocalDateTime.now());
-        orderRepository.save(order);
+        // 归还库存（同一商品合并，按商品ID顺序加锁）
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItem item : orderItemRepository.findByOrderId(orderId)) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        quantities.forEach(productService::addStock);
 
-        log.info("订单 {} 已完成", order.getOrderNo());
+        financeOutboxService.cancelReceivable(orderId);
+        log.info("订单 {} 已取消", orderId);
+    }
+
+    /**
+     * 批量变更订单状态（按ID列表，或按订单号筛选全部匹配的订单），不符合前置状态的订单自动跳过
+     * @param target 目标状态（APPROVED / SHIPPED / COMPLETED）
+     * @return 实际变更的订单数
+     */
+    @Transactional
+    public int batchTransition(Order.OrderStatus target, OrderBatchDTO dto) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean byIds = dto.getIds() != null && !dto.getIds().isEmpty();
+        if (!byIds && !Boolean.TRUE.equals(dto.getByFilter())) {
+            throw new BusinessException(400, "请指定订单ID或按筛选条件处理");
+        }
+        String orderNo = dto.getOrderNo() == null || dto.getOrderNo().isBlank() ? "%" : "%" + dto.getOrderNo() + "%";
+
+        int rows = switch (target) {
+            case APPROVED -> byIds ? orderRepository.approveByIds(dto.getIds(), now)
+                                   : orderRepository.approveByOrderNoLike(orderNo, now);
+            case SHIPPED -> byIds ? orderRepository.shipByIds(dto.getIds(), now)
+                                  : orderRepository.shipByOrderNoLike(orderNo, now);
+            case COMPLETED -> byIds ? orderRepository.completeByIds(dto.getIds(), now)
+                                    : orderRepository.completeByOrderNoLike(orderNo, now);
+            default -> throw new BusinessException(400, "不支持批量变更为 " + target);
+        };
+
+        log.info("批量变更订单状态为 {}，共 {} 个订单", target, rows);
+        return rows;
+    }
+
+    /**
+     * 状态变更失败的原因：订单不存在或状态不符
+     */
+    private BusinessException transitionError(Long orderId, String statusMessage) {
+        if (!orderRepository.existsById(orderId)) {
+            return new BusinessException("订单不存在");
+        }
+        return new BusinessException(statusMessage);
     }
 
     /**
@@ -201,8 +270,58 @@ public class OrderService {
      * 获取订单列表（分页）
      */
     public Page<OrderVO> getOrderList(String orderNo, String status, Pageable pageable) {
+        Specification<Order> spec = buildOrderSpec(orderNo, status);
+
+        Page<Order> orders = orderRepository.findAll(spec, pageable);
+        Map<Long, List<OrderItem>> itemsByOrder = loadItems(orders.getContent());
+        return orders.map(order -> convertToVO(order, itemsByOrder.getOrDefault(order.getId(), List.of())));
+    }
+
+    /**
+     * 获取订单列表（游标分页，按创建时间、ID 倒序，不查询总数）
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     * @param size   每页数量，1 到 100
+     */
+    public CursorPage<OrderVO> getOrderListByCursor(String orderNo, String status, String cursor, int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new BusinessException(400, "每页数量必须在 1 到 " + MAX_CURSOR_PAGE_SIZE + " 之间");
+        }
+        Specification<Order> spec = buildOrderSpec(orderNo, status);
+
+        // 定位到游标之后：create_time < t OR (create_time = t AND id < id)
+        if (cursor != null && !cursor.isBlank()) {
+            OrderCursor position = decodeCursor(cursor);
+            spec = spec.and((root, query, cb) -> cb.or(
+                    cb.lessThan(root.get("createTime"), position.createTime()),
+                    cb.and(cb.equal(root.get("createTime"), position.createTime()),
+                            cb.lessThan(root.get("id"), position.id()))));
+        }
+
+        // 多取一条判断是否还有下一页
+        List<Order> orders = orderRepository.findBy(spec, q -> q
+                .sortBy(Sort.by(Sort.Direction.DESC, "createTime", "id"))
+                .limit(size + 1)
+                .all());
+
+        boolean hasMore = orders.size() > size;
+        if (hasMore) {
+            orders = orders.subList(0, size);
+        }
+
+        Map<Long, List<OrderItem>> itemsByOrder = loadItems(orders);
+        List<OrderVO> content = orders.stream()
+                .map(order -> convertToVO(order, itemsByOrder.getOrDefault(order.getId(), List.of())))
+                .collect(Collectors.toList());
 
-        Specification<Order> spec = (root, query, cb) -> {
+        String nextCursor = hasMore ? encodeCursor(orders.get(orders.size() - 1)) : null;
+        return new CursorPage<>(content, nextCursor, hasMore);
+    }
+
+    /**
+     * 构建订单列表筛选条件
+     */
+    private Specification<Order> buildOrderSpec(String orderNo, String status) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // 按订单号模糊查询
@@ -222,13 +341,27 @@ public class OrderService {
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
+    }
 
-        return orderRepository.findAll(spec, pageable)
-                .map(order -> {
-                    // 优化：可以减少 N+1 查询，但此处保持原逻辑
-                    List<OrderItem> items = orderItemRepository.findByOrderId(order.getId());
-                    return convertToVO(order, items);
-                });
+    /**
+     * 生成游标（创建时间|ID，Base64 编码，对前端不透明）
+     */
+    private String encodeCursor(Order order) {
+        String raw = order.getCreateTime() + "|" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     */
+    private OrderCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.valueOf(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new BusinessException(400, "无效的分页游标");
+        }
     }
 
     /**
@@ -236,33 +369,38 @@ public class OrderService {
      */
     public List<OrderVO> getCustomerOrders(Long customerId) {
         List<Order> orders = orderRepository.findByCustomerIdOrderByCreateTimeDesc(customerId);
+        Map<Long, List<OrderItem>> itemsByOrder = loadItems(orders);
         return orders.stream()
-                .map(order -> {
-                    List<OrderItem> items = orderItemRepository.findByOrderId(order.getId());
-                    return convertToVO(order, items);
-                })
+                .map(order -> convertToVO(order, itemsByOrder.getOrDefault(order.getId(), List.of())))
                 .collect(Collectors.toList());
     }
 
     /**
-     * 生成订单编号
+     * 批量加载一组订单的明细（一次 IN 查询，按订单ID分组）
      */
-    private String generateOrderNo() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        return "ORD" + timestamp + String.format("%04d", (int)(Math.random() * 10000));
+    private Map<Long, List<OrderItem>> loadItems(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        return orderItemRepository.findByOrderIdInOrderByIdAsc(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderItem::getOrderId));
     }
 
     /**
      * 转换为 VO
      */
-    private OrderVO convertToVO(Order order, List<OrderItem> items) {
+    OrderVO convertToVO(Order order, List<OrderItem> items) {
         OrderVO vo = new OrderVO();
         BeanUtils.copyProperties(order, vo);
+        vo.setTotalAmount(Money.toYuan(order.getTotalAmountCents()));
 
         List<OrderVO.OrderItemVO> itemVOs = items.stream()
                 .map(item -> {
                     OrderVO.OrderItemVO itemVO = new OrderVO.OrderItemVO();
                     BeanUtils.copyProperties(item, itemVO);
+                    itemVO.setPrice(Money.toYuan(item.getPriceCents()));
+                    itemVO.setSubtotal(Money.toYuan(item.getSubtotalCents()));
                     return itemVO;
                 })
                 .collect(Collectors.toList());
@@ -271,4 +409,10 @@ public class OrderService {
         return vo;
     }
 
+    /**
+     * 游标位置
+     */
+    private record OrderCursor(LocalDateTime createTime, Long id) {
+    }
+
 }
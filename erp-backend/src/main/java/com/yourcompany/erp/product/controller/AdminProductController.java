@@ -118,4 +118,18 @@ public class AdminProductController {
         return Result.success("库存调整成功", null);
     }
 
+    /**
+     * 设置库存分片
+     */
+    @PostMapping("/{id}/stock-shards")
+	@Operation(summary = "设置库存分片", description = "热卖商品把库存拆分到多个分片行，提高并发下单吞吐；分片数为 1 时恢复单行库存")
+	@Parameter(name = "id", description = "商品 ID")
+	@Parameter(name = "shards", description = "分片数（1-64）")
+    public Result<ProductVO> changeStockShards(@PathVariable Long id,
+                                               @RequestParam Integer shards) {
+        log.info("设置商品 {} 库存分片数: {}", id, shards);
+        ProductVO vo = productService.changeStockShards(id, shards);
+        return Result.success(vo);
+    }
+
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ public class ProductVO {
     private Double vipPrice;
     private Integer stock;
     private Integer stockWarning;
+    private Integer stockShards;  // 库存分片数（为空表示未分片）
     private Integer status;
     private String description;
     private LocalDateTime createTime;
@@ -1,8 +1,10 @@
 package com.yourcompany.erp.product.entity;
 
+import com.yourcompany.erp.common.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Formula;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -29,14 +31,24 @@ public class Product {
     private String code;  // 商品编码（如条形码）
 
     @Column(name = "normal_price", nullable = false)
-    private Double normalPrice;  // 普通客户价格
+    @Convert(converter = MoneyConverter.class)
+    private Long normalPriceCents;  // 普通客户价格（分）
 
     @Column(name = "vip_price", nullable = false)
-    private Double vipPrice;  // VIP 客户价格
+    @Convert(converter = MoneyConverter.class)
+    private Long vipPriceCents;  // VIP 客户价格（分）
 
     @Column(nullable = false)
     private Integer stock = 0;  // 库存数量
 
+    @Column(name = "stock_shards")
+    private Integer stockShards;  // 库存分片数（大于1时库存存放在 product_stock_shard，stock 列不再使用）
+
+    @Formula("(CASE WHEN stock_shards > 1 " +
+             "THEN (SELECT COALESCE(SUM(s.stock), 0) FROM product_stock_shard s WHERE s.product_id = id) " +
+             "ELSE stock END)")
+    private Integer totalStock;  // 可用库存（分片商品为各分片之和，只读）
+
     @Column(name = "stock_warning")
     private Integer stockWarning = 10;  // 库存预警阈值
 
@@ -54,4 +66,11 @@ public class Product {
     @Column(name = "update_time")
     private LocalDateTime updateTime;
 
+    /**
+     * 是否启用库存分片
+     */
+    public boolean isStockSharded() {
+        return stockShards != null && stockShards > 1;
+    }
+
 }
\ No newline at end of file
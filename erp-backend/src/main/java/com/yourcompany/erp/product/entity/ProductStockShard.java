@@ -0,0 +1,29 @@
+package com.yourcompany.erp.product.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 商品库存分片（热卖商品的库存拆成多行，分散行锁竞争）
+ */
+@Data
+@Entity
+@Table(name = "product_stock_shard", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_product_stock_shard", columnNames = {"product_id", "shard_no"})
+})
+public class ProductStockShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;  // 商品ID
+
+    @Column(name = "shard_no", nullable = false)
+    private Integer shardNo;  // 分片序号（0 ~ 分片数-1）
+
+    @Column(nullable = false)
+    private Integer stock = 0;  // 分片库存
+
+}
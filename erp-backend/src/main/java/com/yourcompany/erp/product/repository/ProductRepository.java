@@ -1,13 +1,16 @@
 package com.yourcompany.erp.product.repository;
 
 import com.yourcompany.erp.product.entity.Product;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,29 +33,64 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
      */
     List<Product> findByStatus(Integer status);
 
+    /**
+     * 加锁查询商品
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * 查询其中启用了库存分片的商品
+     */
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids AND p.stockShards > 1")
+    List<Product> findShardedByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * 扣减库存（防超卖）,clearAutomatically = true强制JPA在执行更新后清除缓存。
-     * @return 影响的行数（1=成功，0=库存不足）
+     * 分片商品不在此扣减
+     * @return 影响的行数（1=成功，0=库存不足或分片商品）
      */
 	@Modifying(clearAutomatically = true)
     @Query("UPDATE Product p SET p.stock = p.stock - :quantity " +
-           "WHERE p.id = :productId AND p.stock >= :quantity")
+           "WHERE p.id = :productId AND p.stock >= :quantity " +
+           "AND (p.stockShards IS NULL OR p.stockShards <= 1)")
     int reduceStock(@Param("productId") Long productId, 
                     @Param("quantity") Integer quantity);
 
     /**
-     * 增加库存
+     * 批量扣减库存（防超卖）：一条语句完成多行扣减，先按商品ID顺序加行锁，避免并发下单互相死锁
+     * 分片商品不在此扣减，也不锁商品行（否则并发下单仍在商品行上排队，分片失去意义）
+     * @return 影响的行数（等于商品数=成功，小于商品数=有商品库存不足或为分片商品）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "WITH req AS (" +
+                   "  SELECT * FROM unnest(CAST(:productIds AS bigint[]), CAST(:quantities AS integer[])) AS t(id, qty)" +
+                   "), locked AS MATERIALIZED (" +
+                   "  SELECT p.id FROM product p JOIN req ON req.id = p.id " +
+                   "  WHERE COALESCE(p.stock_shards, 0) <= 1 ORDER BY p.id FOR UPDATE OF p" +
+                   ") " +
+                   "UPDATE product p SET stock = p.stock - req.qty " +
+                   "FROM req JOIN locked ON locked.id = req.id " +
+                   "WHERE p.id = req.id AND p.stock >= req.qty AND COALESCE(p.stock_shards, 0) <= 1",
+           nativeQuery = true)
+    int reduceStockBatch(@Param("productIds") Long[] productIds,
+                         @Param("quantities") Integer[] quantities);
+
+    /**
+     * 增加库存（分片商品不在此增加）
+     * @return 影响的行数（1=成功，0=商品不存在或为分片商品）
      */
     @Modifying
     @Query("UPDATE Product p SET p.stock = p.stock + :quantity " +
-           "WHERE p.id = :productId")
+           "WHERE p.id = :productId AND (p.stockShards IS NULL OR p.stockShards <= 1)")
     int addStock(@Param("productId") Long productId, 
                  @Param("quantity") Integer quantity);
 
     /**
      * 查询库存预警商品
      */
-    @Query("SELECT p FROM Product p WHERE p.stock <= p.stockWarning AND p.status = 1")
+    @Query("SELECT p FROM Product p WHERE p.totalStock <= p.stockWarning AND p.status = 1")
     List<Product> findLowStockProducts();
 	
 
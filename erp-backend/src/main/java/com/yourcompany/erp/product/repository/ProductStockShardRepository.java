@@ -0,0 +1,73 @@
+package com.yourcompany.erp.product.repository;
+
+import com.yourcompany.erp.product.entity.ProductStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, Long> {
+
+    /**
+     * 扣减单个分片库存（防超卖）
+     * @return 影响的行数（1=成功，0=该分片库存不足）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ProductStockShard s SET s.stock = s.stock - :quantity " +
+           "WHERE s.productId = :productId AND s.shardNo = :shardNo AND s.stock >= :quantity")
+    int reduceStock(@Param("productId") Long productId,
+                    @Param("shardNo") Integer shardNo,
+                    @Param("quantity") Integer quantity);
+
+    /**
+     * 从未被其他事务锁定且库存足够的分片中扣减（从 start 号分片起轮询，跳过已锁定分片，不等待）
+     * @return 影响的行数（1=成功，0=没有空闲且库存足够的分片）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE product_stock_shard SET stock = stock - :quantity " +
+                   "WHERE id = (SELECT s.id FROM product_stock_shard s " +
+                   "  WHERE s.product_id = :productId AND s.stock >= :quantity " +
+                   "  ORDER BY (s.shard_no + :shards - :start) % :shards LIMIT 1 FOR UPDATE SKIP LOCKED)",
+           nativeQuery = true)
+    int reduceAnyUnlocked(@Param("productId") Long productId,
+                          @Param("start") Integer start,
+                          @Param("shards") Integer shards,
+                          @Param("quantity") Integer quantity);
+
+    /**
+     * 增加单个分片库存
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ProductStockShard s SET s.stock = s.stock + :quantity " +
+           "WHERE s.productId = :productId AND s.shardNo = :shardNo")
+    int addStock(@Param("productId") Long productId,
+                 @Param("shardNo") Integer shardNo,
+                 @Param("quantity") Integer quantity);
+
+    /**
+     * 按分片序号顺序锁定商品的全部分片
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockShard s WHERE s.productId = :productId ORDER BY s.shardNo")
+    List<ProductStockShard> lockByProductId(@Param("productId") Long productId);
+
+    /**
+     * 商品各分片库存之和
+     */
+    @Query("SELECT COALESCE(SUM(s.stock), 0) FROM ProductStockShard s WHERE s.productId = :productId")
+    Long sumStockByProductId(@Param("productId") Long productId);
+
+    /**
+     * 删除商品的全部分片
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM ProductStockShard s WHERE s.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+
+}
@@ -1,10 +1,13 @@
 package com.yourcompany.erp.product.service;
 
 import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.money.Money;
 import com.yourcompany.erp.product.dto.ProductDTO;
 import com.yourcompany.erp.product.dto.ProductVO;
 import com.yourcompany.erp.product.entity.Product;
+import com.yourcompany.erp.product.entity.ProductStockShard;
 import com.yourcompany.erp.product.repository.ProductRepository;
+import com.yourcompany.erp.product.repository.ProductStockShardRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,16 +19,25 @@ import org.springframework.data.jpa.domain.Specification;
 import jakarta.persistence.criteria.Predicate;
 import java.util.ArrayList;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class ProductService {
 
+    private static final int MAX_STOCK_SHARDS = 64;
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductStockShardRepository productStockShardRepository;
+
     /**
      * 创建商品
      */
@@ -38,6 +50,7 @@ public class ProductService {
 
         Product product = new Product();
         BeanUtils.copyProperties(dto, product);
+        setPrices(product, dto);
         product.setStatus(1);  // 默认上架
         
         product = productRepository.save(product);
@@ -61,7 +74,13 @@ public class ProductService {
             }
         }
 
-        BeanUtils.copyProperties(dto, product, "id", "status", "createTime");
+        // 分片商品的库存只能通过库存调整接口修改
+        if (product.isStockSharded()) {
+            BeanUtils.copyProperties(dto, product, "id", "status", "createTime", "stock");
+        } else {
+            BeanUtils.copyProperties(dto, product, "id", "status", "createTime");
+        }
+        setPrices(product, dto);
         product = productRepository.save(product);
         
         log.info("商品 {} 更新成功", product.getName());
@@ -146,27 +165,163 @@ public class ProductService {
     public void reduceStock(Long productId, Integer quantity) {
         int rows = productRepository.reduceStock(productId, quantity);
         if (rows == 0) {
-            throw new BusinessException("库存不足");
+            // 分片商品走分片扣减，否则就是库存不足
+            Product product = productRepository.findById(productId).orElse(null);
+            if (product == null || !product.isStockSharded()) {
+                throw new BusinessException("库存不足");
+            }
+            reduceShardedStock(productId, product.getStockShards(), quantity);
         }
         log.info("商品 {} 库存扣减 {}", productId, quantity);
     }
 
+    /**
+     * 批量扣减库存（下单使用，一条语句扣减全部商品）
+     * @param quantities 商品ID -> 扣减数量
+     */
+    @Transactional
+    public void reduceStockBatch(Map<Long, Integer> quantities) {
+        Long[] productIds = quantities.keySet().stream().sorted().toArray(Long[]::new);
+        Integer[] amounts = Arrays.stream(productIds).map(quantities::get).toArray(Integer[]::new);
+
+        int rows = productRepository.reduceStockBatch(productIds, amounts);
+        if (rows != productIds.length) {
+            // 普通商品都扣减成功时，差额只能来自分片商品，按商品ID顺序逐个分片扣减
+            List<Product> sharded = productRepository.findShardedByIdIn(quantities.keySet());
+            if (rows + sharded.size() != productIds.length) {
+                throw new BusinessException("库存不足");
+            }
+            sharded.stream()
+                    .sorted(Comparator.comparing(Product::getId))
+                    .forEach(p -> reduceShardedStock(p.getId(), p.getStockShards(), quantities.get(p.getId())));
+        }
+        log.info("批量扣减库存 {} 个商品", productIds.length);
+    }
+
     /**
      * 增加库存
      */
     @Transactional
     public void addStock(Long productId, Integer quantity) {
-        productRepository.addStock(productId, quantity);
+        int rows = productRepository.addStock(productId, quantity);
+        if (rows == 0) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new BusinessException("商品不存在"));
+            // 分片商品随机加到一个分片
+            int shardNo = ThreadLocalRandom.current().nextInt(product.getStockShards());
+            productStockShardRepository.addStock(productId, shardNo, quantity);
+        }
         log.info("商品 {} 库存增加 {}", productId, quantity);
     }
 
+    /**
+     * 设置库存分片数（大于1启用分片，等于1恢复为单行库存），现有库存平均分配到各分片
+     */
+    @Transactional
+    public ProductVO changeStockShards(Long productId, int shards) {
+        if (shards < 1 || shards > MAX_STOCK_SHARDS) {
+            throw new BusinessException("分片数必须在 1-" + MAX_STOCK_SHARDS + " 之间");
+        }
+        Product product = productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new BusinessException("商品不存在"));
+
+        // 收回当前全部库存
+        int total = product.getStock();
+        if (product.isStockSharded()) {
+            total = productStockShardRepository.lockByProductId(productId).stream()
+                    .mapToInt(ProductStockShard::getStock)
+                    .sum();
+            productStockShardRepository.deleteByProductId(productId);
+            product = productRepository.findById(productId).orElseThrow();
+        }
+
+        if (shards > 1) {
+            List<ProductStockShard> shardRows = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                ProductStockShard shard = new ProductStockShard();
+                shard.setProductId(productId);
+                shard.setShardNo(i);
+                shard.setStock(total / shards + (i < total % shards ? 1 : 0));
+                shardRows.add(shard);
+            }
+            productStockShardRepository.saveAllAndFlush(shardRows);
+            product.setStock(0);
+            product.setStockShards(shards);
+        } else {
+            product.setStock(total);
+            product.setStockShards(null);
+        }
+        product.setTotalStock(total);
+        product = productRepository.save(product);
+
+        log.info("商品 {} 库存分片数设为 {}，总库存 {}", product.getName(), shards, total);
+        return convertToVO(product);
+    }
+
+    /**
+     * 分片扣减：随机选一个分片，不够再依次尝试其他分片，单个分片都不够时锁住全部分片合并扣减
+     */
+    private void reduceShardedStock(Long productId, int shards, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        // 先挑一个空闲分片，并发下单各扣各的分片，互不等待
+        if (productStockShardRepository.reduceAnyUnlocked(productId, start, shards, quantity) == 1) {
+            return;
+        }
+        // 空闲分片都不够时再逐个等待被锁分片
+        for (int i = 0; i < shards; i++) {
+            if (productStockShardRepository.reduceStock(productId, (start + i) % shards, quantity) == 1) {
+                return;
+            }
+        }
+
+        List<ProductStockShard> shardRows = productStockShardRepository.lockByProductId(productId);
+        int total = shardRows.stream().mapToInt(ProductStockShard::getStock).sum();
+        if (total < quantity) {
+            throw new BusinessException("商品 " + productId + " 库存不足");
+        }
+        int remaining = quantity;
+        for (ProductStockShard shard : shardRows) {
+            int take = Math.min(shard.getStock(), remaining);
+            shard.setStock(shard.getStock() - take);
+            remaining -= take;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        productStockShardRepository.saveAllAndFlush(shardRows);
+    }
+
+    /**
+     * 可用库存（分片商品为各分片之和）
+     */
+    private int availableStock(Product product) {
+        if (!product.isStockSharded()) {
+            return product.getStock();
+        }
+        if (product.getTotalStock() != null) {
+            return product.getTotalStock();
+        }
+        return productStockShardRepository.sumStockByProductId(product.getId()).intValue();
+    }
+
+    /**
+     * 价格（元）换算为分写入商品
+     */
+    private void setPrices(Product product, ProductDTO dto) {
+        product.setNormalPriceCents(Money.toCents(dto.getNormalPrice()));
+        product.setVipPriceCents(Money.toCents(dto.getVipPrice()));
+    }
+
     /**
      * 转换为 VO
      */
     private ProductVO convertToVO(Product product) {
         ProductVO vo = new ProductVO();
         BeanUtils.copyProperties(product, vo);
-        vo.setIsLowStock(product.getStock() <= product.getStockWarning());
+        vo.setNormalPrice(Money.toYuan(product.getNormalPriceCents()));
+        vo.setVipPrice(Money.toYuan(product.getVipPriceCents()));
+        vo.setStock(availableStock(product));
+        vo.setIsLowStock(vo.getStock() <= product.getStockWarning());
         return vo;
     }
 
@@ -1,28 +1,60 @@
 package com.yourcompany.erp.finance;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.money.Money;
+import com.yourcompany.erp.customer.dto.CustomerDTO;
 import com.yourcompany.erp.customer.entity.Customer;
 import com.yourcompany.erp.customer.repository.CustomerRepository;
+import com.yourcompany.erp.customer.service.CustomerService;
 import com.yourcompany.erp.finance.dto.*;
+import com.yourcompany.erp.finance.entity.CustomerBalanceSnapshot;
+import com.yourcompany.erp.finance.entity.CustomerLedgerEntry;
 import com.yourcompany.erp.finance.entity.Receivable;
+import com.yourcompany.erp.finance.repository.CustomerBalanceSnapshotRepository;
+import com.yourcompany.erp.finance.repository.CustomerLedgerRepository;
 import com.yourcompany.erp.finance.repository.ReceivableRepository;
+import com.yourcompany.erp.finance.service.BankImportService;
 import com.yourcompany.erp.finance.service.FinanceService;
+import com.yourcompany.erp.finance.service.OverdueScanner;
+import com.yourcompany.erp.finance.service.PeriodCloseService;
+import com.yourcompany.erp.finance.service.StatementJobService;
 import com.yourcompany.erp.order.entity.Order;
 import com.yourcompany.erp.order.repository.OrderRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 @Transactional  // 测试后自动回滚
-class FinanceTestsV2 {
+class FinanceTests {
 
     @Autowired
     private FinanceService financeService;
@@ -30,12 +62,39 @@ class FinanceTestsV2 {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private CustomerService customerService;
+
     @Autowired
     private OrderRepository orderRepository;
 
     @Autowired
     private ReceivableRepository receivableRepository;
 
+    @Autowired
+    private PeriodCloseService periodCloseService;
+
+    @Autowired
+    private CustomerBalanceSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private CustomerLedgerRepository customerLedgerRepository;
+
+    @Autowired
+    private StatementJobService statementJobService;
+
+    @Autowired
+    private BankImportService bankImportService;
+
+    @Autowired
+    private OverdueScanner overdueScanner;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ThreadPoolTaskScheduler taskScheduler;
+
     private Customer testCustomer;
     private List<Order> testOrders = new ArrayList<>();
 
@@ -45,8 +104,8 @@ class FinanceTestsV2 {
         testCustomer = new Customer();
         testCustomer.setName("测试客户");
         testCustomer.setLevel(Customer.CustomerLevel.NORMAL);
-        testCustomer.setCreditLimit(10000.0);
-        testCustomer.setBalance(0.0);
+        testCustomer.setCreditLimitCents(1000000L);
+        testCustomer.setBalanceCents(0L);
         testCustomer = customerRepository.save(testCustomer);
 
         // 创建多个测试订单
@@ -55,7 +114,7 @@ class FinanceTestsV2 {
             order.setOrderNo("TEST" + System.currentTimeMillis() + i);
             order.setCustomerId(testCustomer.getId());
             order.setCustomerName(testCustomer.getName());
-            order.setTotalAmount(1000.0 * i);
+            order.setTotalAmountCents(100000L * i);
             order.setStatus(Order.OrderStatus.PENDING);
             testOrders.add(orderRepository.save(order));
         }
@@ -65,7 +124,7 @@ class FinanceTestsV2 {
     void testBatchPayment() {
         // 创建3笔应收
         for (Order order : testOrders) {
-            financeService.createReceivable(order.getId(), testCustomer.getId(), order.getTotalAmount());
+            createReceivable(order.getId(), testCustomer.getId(), Money.toYuan(order.getTotalAmountCents()));
         }
 
         List<Receivable> receivables = receivableRepository.findByCustomerId(testCustomer.getId());
@@ -100,13 +159,13 @@ class FinanceTestsV2 {
 
         // 验证客户余额
         Customer customer = customerRepository.findById(testCustomer.getId()).orElseThrow();
-        assertEquals(3000.0, customer.getBalance());  // 还有第3笔3000未收
+        assertEquals(300000L, customer.getBalanceCents());  // 还有第3笔3000未收
     }
 
     @Test
     void testPartialAllocation() {
         // 创建1笔应收
-        financeService.createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
         Receivable receivable = receivableRepository.findByCustomerId(testCustomer.getId()).get(0);
 
         // 部分核销：收款500元
@@ -123,7 +182,7 @@ class FinanceTestsV2 {
 
         // 验证应收状态为部分收款
         Receivable updated = receivableRepository.findById(receivable.getId()).orElseThrow();
-        assertEquals(500.0, updated.getPaidAmount());
+        assertEquals(50000L, updated.getPaidAmountCents());
         assertEquals(Receivable.ReceivableStatus.PARTIAL, updated.getStatus());
 
         // 再次收款500元，完全核销
@@ -140,32 +199,278 @@ class FinanceTestsV2 {
 
         // 验证应收状态为已收款
         Receivable finalState = receivableRepository.findById(receivable.getId()).orElseThrow();
-        assertEquals(1000.0, finalState.getPaidAmount());
+        assertEquals(100000L, finalState.getPaidAmountCents());
         assertEquals(Receivable.ReceivableStatus.PAID, finalState.getStatus());
     }
 
+    @Test
+    void testBatchPaymentMergesLines() {
+        for (Order order : testOrders) {
+            createReceivable(order.getId(), testCustomer.getId(), Money.toYuan(order.getTotalAmountCents()));
+        }
+        List<Receivable> receivables = receivableRepository.findByCustomerId(testCustomer.getId());
+        Receivable first = receivables.stream().filter(r -> r.getAmountCents() == 100000L).findFirst().orElseThrow();
+        Receivable third = receivables.stream().filter(r -> r.getAmountCents() == 300000L).findFirst().orElseThrow();
+
+        // 同一笔应收拆成两行核销，合并后一起累加
+        PaymentBatchDTO dto = new PaymentBatchDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setTotalAmount(2000.0);
+        dto.setPaymentMethod("转账");
+        List<PaymentBatchDTO.AllocationItem> allocations = new ArrayList<>();
+        allocations.add(createAllocation(first.getId(), 400.0));
+        allocations.add(createAllocation(third.getId(), 1000.0));
+        allocations.add(createAllocation(first.getId(), 600.0));
+        dto.setAllocations(allocations);
+
+        financeService.recordBatchPayment(dto);
+
+        Receivable r1 = receivableRepository.findById(first.getId()).orElseThrow();
+        assertEquals(100000L, r1.getPaidAmountCents());
+        assertEquals(Receivable.ReceivableStatus.PAID, r1.getStatus());
+        Receivable r3 = receivableRepository.findById(third.getId()).orElseThrow();
+        assertEquals(100000L, r3.getPaidAmountCents());
+        assertEquals(Receivable.ReceivableStatus.PARTIAL, r3.getStatus());
+        assertEquals(400000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+
+        // 收款记录带出全部核销订单编号
+        PaymentVO payment = financeService.getPaymentList(testCustomer.getId()).get(0);
+        assertEquals(testCustomer.getName(), payment.getCustomerName());
+        assertEquals(2, payment.getOrderNos().size());
+        assertEquals(payment.getOrderNos().get(0), payment.getOrderNo());
+        assertTrue(payment.getOrderNos().containsAll(List.of(testOrders.get(0).getOrderNo(), testOrders.get(2).getOrderNo())));
+
+        // 合并后超过未收金额
+        PaymentBatchDTO over = new PaymentBatchDTO();
+        over.setCustomerId(testCustomer.getId());
+        over.setTotalAmount(2400.0);
+        over.setPaymentMethod("转账");
+        over.setAllocations(List.of(createAllocation(third.getId(), 1200.0), createAllocation(third.getId(), 1200.0)));
+        assertThrows(Exception.class, () -> financeService.recordBatchPayment(over));
+    }
+
+    @Test
+    void testReceivableListProjection() {
+        for (Order order : testOrders) {
+            createReceivable(order.getId(), testCustomer.getId(), Money.toYuan(order.getTotalAmountCents()));
+        }
+
+        List<ReceivableVO> list = financeService.getCustomerReceivables(testCustomer.getId());
+        assertEquals(3, list.size());
+        assertEquals(testOrders.get(0).getOrderNo(), list.get(0).getOrderNo());
+        assertEquals(testCustomer.getName(), list.get(0).getCustomerName());
+        assertEquals(1000.0, list.get(0).getUnpaidAmount());
+
+        Page<ReceivableVO> page = financeService.getReceivableList(testCustomer.getId(), "unpaid", PageRequest.of(0, 2));
+        assertEquals(3, page.getTotalElements());
+        assertEquals(2, page.getContent().size());
+        assertEquals(0, financeService.getReceivableList(testCustomer.getId(), "PAID", PageRequest.of(0, 2)).getTotalElements());
+        assertFalse(financeService.getReceivableList(null, null, PageRequest.of(0, 2)).isEmpty());
+    }
+
+    @Test
+    void testAutoAllocatePayment() {
+        for (int i = 0; i < testOrders.size(); i++) {
+            Order order = testOrders.get(i);
+            createReceivable(order.getId(), testCustomer.getId(), Money.toYuan(order.getTotalAmountCents()));
+            setCreateTime(order.getId(), LocalDateTime.now().minusDays(30 - i));  // 第1笔最早
+        }
+
+        // 按 (创建时间, ID) 键集逐条翻页，先进先出且不重复
+        List<Long> paged = new ArrayList<>();
+        LocalDateTime afterTime = LocalDateTime.of(1970, 1, 1, 0, 0);
+        long afterId = 0L;
+        List<ReceivableRepository.OpenReceivable> page;
+        while (!(page = receivableRepository.findOpenForAllocation(testCustomer.getId(), afterTime, afterId, 1)).isEmpty()) {
+            paged.add(page.get(0).getReceivableId());
+            afterTime = page.get(0).getCreateTime();
+            afterId = page.get(0).getReceivableId();
+        }
+        assertEquals(testOrders.stream().map(o -> receivableRepository.findByOrderId(o.getId()).orElseThrow().getId()).toList(),
+                paged);
+
+        PaymentAutoDTO dto = new PaymentAutoDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setAmount(2500.0);
+        dto.setPaymentMethod("转账");
+
+        // 试算：先核销最早的 1000，再核销第二笔中的 1500，不入账
+        dto.setDryRun(true);
+        PaymentAllocationPlanVO plan = financeService.autoAllocatePayment(dto);
+        assertEquals(2, plan.getAllocations().size());
+        assertEquals(testOrders.get(0).getOrderNo(), plan.getAllocations().get(0).getOrderNo());
+        assertEquals(1000.0, plan.getAllocations().get(0).getAmount());
+        assertEquals(1500.0, plan.getAllocations().get(1).getAmount());
+        assertNull(plan.getPayment());
+        assertEquals(600000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+
+        // 入账
+        dto.setDryRun(false);
+        plan = financeService.autoAllocatePayment(dto);
+        assertNotNull(plan.getPayment());
+        assertEquals(Receivable.ReceivableStatus.PAID,
+                receivableRepository.findByOrderId(testOrders.get(0).getId()).orElseThrow().getStatus());
+        assertEquals(150000L, receivableRepository.findByOrderId(testOrders.get(1).getId()).orElseThrow().getPaidAmountCents());
+        assertEquals(350000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+
+        // 收款超过未收总额，超出部分不核销
+        dto.setAmount(10000.0);
+        dto.setDryRun(true);
+        plan = financeService.autoAllocatePayment(dto);
+        assertEquals(3500.0, plan.getAllocatedAmount());
+        assertEquals(6500.0, plan.getUnallocatedAmount());
+
+        // 入账时收款记录只记核销金额，超出部分作为未核销金额返回
+        dto.setDryRun(false);
+        plan = financeService.autoAllocatePayment(dto);
+        assertEquals(3500.0, plan.getPayment().getAmount());
+        assertEquals(6500.0, plan.getUnallocatedAmount());
+        assertEquals(0L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+    }
+
+    @Test
+    void testIncrementalAllocation() {
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        Receivable receivable = receivableRepository.findByCustomerId(testCustomer.getId()).get(0);
+
+        PaymentDTO dto = new PaymentDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setReceivableId(receivable.getId());
+        dto.setPaymentMethod("转账");
+
+        // 分两次收款，状态由 PARTIAL 变为 PAID
+        dto.setAmount(600.0);
+        financeService.recordPayment(dto);
+        Receivable partial = receivableRepository.findById(receivable.getId()).orElseThrow();
+        assertEquals(60000L, partial.getPaidAmountCents());
+        assertEquals(Receivable.ReceivableStatus.PARTIAL, partial.getStatus());
+
+        dto.setAmount(400.0);
+        financeService.recordPayment(dto);
+        Receivable paid = receivableRepository.findById(receivable.getId()).orElseThrow();
+        assertEquals(100000L, paid.getPaidAmountCents());
+        assertEquals(Receivable.ReceivableStatus.PAID, paid.getStatus());
+        assertEquals(0L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+    }
+
+    @Test
+    void testPaymentForOtherCustomersReceivable() {
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        Receivable receivable = receivableRepository.findByCustomerId(testCustomer.getId()).get(0);
+
+        Customer other = new Customer();
+        other.setName("其他客户");
+        other.setCreditLimitCents(1000000L);
+        other = customerRepository.save(other);
+
+        // 收款客户与应收所属客户不一致
+        PaymentDTO dto = new PaymentDTO();
+        dto.setCustomerId(other.getId());
+        dto.setReceivableId(receivable.getId());
+        dto.setAmount(500.0);
+        assertThrows(BusinessException.class, () -> financeService.recordPayment(dto));
+
+        assertEquals(100000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+        assertEquals(0L, customerRepository.findById(other.getId()).orElseThrow().getBalanceCents());
+    }
+
+    @Test
+    void testCentExactAllocation() {
+        // 0.1 + 0.2 在 double 下不等于 0.3，按分核销后应收恰好结清
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 0.3);
+        Receivable receivable = receivableRepository.findByCustomerId(testCustomer.getId()).get(0);
+
+        PaymentDTO dto = new PaymentDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setReceivableId(receivable.getId());
+        dto.setPaymentMethod("转账");
+        dto.setAmount(0.1);
+        financeService.recordPayment(dto);
+        dto.setAmount(0.2);
+        financeService.recordPayment(dto);
+
+        Receivable paid = receivableRepository.findById(receivable.getId()).orElseThrow();
+        assertEquals(30L, paid.getPaidAmountCents());
+        assertEquals(Receivable.ReceivableStatus.PAID, paid.getStatus());
+        assertEquals(0L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+
+        // 已结清后再收 0.01 必须被拒绝（不再依赖浮点容差）
+        dto.setAmount(0.01);
+        assertThrows(BusinessException.class, () -> financeService.recordPayment(dto));
+    }
+
+    @Test
+    void testCentExactUnpaidAmounts() {
+        // double 下 0.3 - 0.1 = 0.19999999999999998，0.2 + 0.1 = 0.30000000000000004，按分计算后均为精确值
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 0.3);
+        createReceivable(testOrders.get(1).getId(), testCustomer.getId(), 0.1);
+        Receivable receivable = receivableRepository.findByOrderId(testOrders.get(0).getId()).orElseThrow();
+
+        PaymentDTO dto = new PaymentDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setReceivableId(receivable.getId());
+        dto.setPaymentMethod("转账");
+        dto.setAmount(0.1);
+        financeService.recordPayment(dto);
+
+        ReceivableVO vo = financeService.getCustomerReceivables(testCustomer.getId()).stream()
+                .filter(r -> r.getId().equals(receivable.getId())).findFirst().orElseThrow();
+        assertEquals(0.2, vo.getUnpaidAmount());
+        assertEquals(0.3, financeService.getCustomerDebt(testCustomer.getId()).getTotalDebt());
+        assertEquals(0.3, financeService.analyzeReceivableAge(testCustomer.getId()).getTotalUnpaid());
+    }
+
+    @Test
+    void testRepairCustomerBalance() {
+        for (Order order : testOrders) {
+            createReceivable(order.getId(), testCustomer.getId(), Money.toYuan(order.getTotalAmountCents()));
+        }
+        assertEquals(600000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+
+        // 人为写坏余额，重算后恢复为应收未收合计
+        jdbcTemplate.update("UPDATE customer SET balance = 1 WHERE id = ?", testCustomer.getId());
+
+        assertEquals(1, financeService.repairCustomerBalance(testCustomer.getId()));
+        assertEquals(600000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+    }
+
+    @Test
+    void testCustomerUpdateKeepsBalance() {
+        // 先读出客户（余额0），随后余额被原子 UPDATE 增加，再保存客户资料
+        customerRepository.findById(testCustomer.getId()).orElseThrow();
+        customerRepository.addBalance(testCustomer.getId(), 50000L);
+
+        CustomerDTO dto = new CustomerDTO();
+        dto.setRemark("更新备注");
+        customerService.updateCustomer(testCustomer.getId(), dto);
+        customerService.toggleCustomerStatus(testCustomer.getId());
+        customerRepository.flush();
+
+        // 保存客户实体不会把读出时的旧余额写回
+        assertEquals(500.0, jdbcTemplate.queryForObject(
+                "SELECT balance FROM customer WHERE id = ?", Double.class, testCustomer.getId()));
+    }
+
     @Test
     void testReceivableAgeAnalysis() {
+        // 账期为0，账龄等于创建天数
+        testCustomer.setPaymentTermDays(0);
+        customerRepository.save(testCustomer);
+
         // 创建不同时间的应收
         Order order1 = testOrders.get(0);
-        financeService.createReceivable(order1.getId(), testCustomer.getId(), 1000.0);
+        createReceivable(order1.getId(), testCustomer.getId(), 1000.0);
 
-        // 修改创建时间模拟不同账龄
-        Receivable r1 = receivableRepository.findByCustomerId(testCustomer.getId()).get(0);
-        r1.setCreateTime(LocalDateTime.now().minusDays(10));  // 10天前
-        receivableRepository.save(r1);
+        // 修改创建时间模拟不同账龄（create_time 不可经实体更新，直接改库）
+        setCreateTime(order1.getId(), LocalDateTime.now().minusDays(10));  // 10天前
 
         Order order2 = testOrders.get(1);
-        financeService.createReceivable(order2.getId(), testCustomer.getId(), 2000.0);
-        Receivable r2 = receivableRepository.findByCustomerId(testCustomer.getId()).get(1);
-        r2.setCreateTime(LocalDateTime.now().minusDays(25));  // 25天前
-        receivableRepository.save(r2);
+        createReceivable(order2.getId(), testCustomer.getId(), 2000.0);
+        setCreateTime(order2.getId(), LocalDateTime.now().minusDays(25));  // 25天前
 
         Order order3 = testOrders.get(2);
-        financeService.createReceivable(order3.getId(), testCustomer.getId(), 3000.0);
-        Receivable r3 = receivableRepository.findByCustomerId(testCustomer.getId()).get(2);
-        r3.setCreateTime(LocalDateTime.now().minusDays(70));  // 70天前
-        receivableRepository.save(r3);
+        createReceivable(order3.getId(), testCustomer.getId(), 3000.0);
+        setCreateTime(order3.getId(), LocalDateTime.now().minusDays(70));  // 70天前
 
         // 账龄分析
         ReceivableAgeVO ageVO = financeService.analyzeReceivableAge(testCustomer.getId());
@@ -175,6 +480,41 @@ class FinanceTestsV2 {
         assertEquals(2000.0, ageVO.getWithin30Days());   // 25天的
         assertEquals(3000.0, ageVO.getOver60Days());     // 70天的
         assertEquals(6000.0, ageVO.getTotalUnpaid());
+
+        // 账龄按到期日计算：第3笔改为20天前到期，逾期20天
+        jdbcTemplate.update("UPDATE receivable SET due_date = ? WHERE order_id = ?", LocalDate.now().minusDays(20), order3.getId());
+        ReceivableAgeVO byDueDate = financeService.analyzeReceivableAge(testCustomer.getId());
+        assertEquals(5000.0, byDueDate.getWithin30Days());
+        assertEquals(0.0, byDueDate.getOver60Days());
+        jdbcTemplate.update("UPDATE receivable SET due_date = ? WHERE order_id = ?", LocalDate.now().minusDays(70), order3.getId());
+
+        // 全部客户账龄矩阵中包含该客户，且与单客户结果一致
+        ReceivableAgeVO row = financeService.analyzeReceivableAgeMatrix(List.of(testCustomer.getId()), null, "over60", 10).get(0);
+        assertEquals(ageVO, row);
+        assertTrue(financeService.analyzeReceivableAgeMatrix(null, "NORMAL", "total", 1000).stream()
+                .anyMatch(vo -> vo.getCustomerId().equals(testCustomer.getId())));
+
+        // 按指定账龄段降序后截取：另一客户15天内金额更大，排在前面
+        Customer other = new Customer();
+        other.setName("账龄对比客户");
+        other.setLevel(Customer.CustomerLevel.NORMAL);
+        other = customerRepository.save(other);
+        Order otherOrder = new Order();
+        otherOrder.setOrderNo("TEST" + System.currentTimeMillis() + "X");
+        otherOrder.setCustomerId(other.getId());
+        otherOrder.setCustomerName(other.getName());
+        otherOrder.setTotalAmountCents(500000L);
+        otherOrder.setStatus(Order.OrderStatus.PENDING);
+        otherOrder = orderRepository.save(otherOrder);
+        createReceivable(otherOrder.getId(), other.getId(), 5000.0);
+
+        List<Long> both = List.of(testCustomer.getId(), other.getId());
+        List<ReceivableAgeVO> byWithin15 = financeService.analyzeReceivableAgeMatrix(both, null, "within15", 1);
+        assertEquals(1, byWithin15.size());
+        assertEquals(other.getId(), byWithin15.get(0).getCustomerId());
+        assertEquals(testCustomer.getId(), financeService.analyzeReceivableAgeMatrix(both, null, "over60", 1).get(0).getCustomerId());
+        assertEquals(400, assertThrows(BusinessException.class,
+                () -> financeService.analyzeReceivableAgeMatrix(both, null, "name", 10)).getCode());
     }
 
     @Test
@@ -184,7 +524,7 @@ class FinanceTestsV2 {
         int currentMonth = LocalDateTime.now().getMonthValue();
 
         // 创建应收
-        financeService.createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
 
         // 生成对账单
         AccountStatementVO statement = financeService.generateMonthlyStatement(
@@ -196,10 +536,255 @@ class FinanceTestsV2 {
         assertTrue(statement.getDetails().size() > 0);
     }
 
+    @Test
+    void testStatementRunningBalance() {
+        YearMonth lastMonth = YearMonth.now().minusMonths(1);
+
+        // 销售 1000（1日）→ 收款 600（2日）→ 销售 2000（3日），明细交错
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        setCreateTime(testOrders.get(0).getId(), lastMonth.atDay(1).atTime(9, 0));
+        createReceivable(testOrders.get(1).getId(), testCustomer.getId(), 2000.0);
+        setCreateTime(testOrders.get(1).getId(), lastMonth.atDay(3).atTime(9, 0));
+
+        Receivable first = receivableRepository.findByOrderId(testOrders.get(0).getId()).orElseThrow();
+        PaymentBatchDTO dto = new PaymentBatchDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setTotalAmount(600.0);
+        dto.setPaymentMethod("转账");
+        dto.setAllocations(List.of(createAllocation(first.getId(), 600.0)));
+        PaymentVO payment = financeService.recordBatchPayment(dto);
+        setPaymentTime(payment.getId(), lastMonth.atDay(2).atTime(9, 0));
+
+        AccountStatementVO statement = financeService.generateMonthlyStatement(
+                testCustomer.getId(), lastMonth.getYear(), lastMonth.getMonthValue());
+
+        List<AccountStatementVO.StatementDetail> details = statement.getDetails();
+        assertEquals(3, details.size());
+        assertEquals("销售", details.get(0).getType());
+        assertEquals(testOrders.get(0).getOrderNo(), details.get(0).getRefNo());
+        assertEquals(1000.0, details.get(0).getBalance());
+        assertEquals("收款", details.get(1).getType());
+        assertEquals(400.0, details.get(1).getBalance());
+        assertEquals(2400.0, details.get(2).getBalance());
+        assertEquals(3000.0, statement.getPeriodSales());
+        assertEquals(600.0, statement.getPeriodPayments());
+        assertEquals(2400.0, statement.getClosingBalance());
+    }
+
+    @Test
+    void testPeriodCloseSnapshot() {
+        YearMonth twoMonthsAgo = YearMonth.now().minusMonths(2);
+        YearMonth lastMonth = YearMonth.now().minusMonths(1);
+
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        setCreateTime(testOrders.get(0).getId(), twoMonthsAgo.atDay(10).atStartOfDay());
+        createReceivable(testOrders.get(1).getId(), testCustomer.getId(), 2000.0);
+        setCreateTime(testOrders.get(1).getId(), lastMonth.atDay(5).atStartOfDay());
+
+        // 未月结时期初余额实时累计
+        assertEquals(1000.0, financeService.generateMonthlyStatement(
+                testCustomer.getId(), lastMonth.getYear(), lastMonth.getMonthValue()).getOpeningBalance());
+
+        // 月结后生成快照，之后的期初余额 = 快照 + 快照之后的发生额
+        assertTrue(periodCloseService.closePeriod(twoMonthsAgo) > 0);
+        CustomerBalanceSnapshot snapshot = snapshotRepository
+                .findTopByCustomerIdAndPeriodStartLessThanEqualOrderByPeriodStartDesc(testCustomer.getId(), lastMonth.atDay(1))
+                .orElseThrow();
+        assertEquals(twoMonthsAgo.atDay(1), snapshot.getPeriodStart());
+        assertEquals(100000L, snapshot.getClosingBalanceCents());
+
+        YearMonth now = YearMonth.now();
+        assertEquals(3000.0, financeService.generateMonthlyStatement(
+                testCustomer.getId(), now.getYear(), now.getMonthValue()).getOpeningBalance());
+
+        // 批量生成与逐个生成结果一致；没有分录的客户期初为0、没有明细，不存在的客户忽略
+        Customer idle = new Customer();
+        idle.setName("无往来客户");
+        idle.setLevel(Customer.CustomerLevel.NORMAL);
+        idle = customerRepository.save(idle);
+        Map<Long, AccountStatementVO> batch = financeService.generateMonthlyStatements(
+                        List.of(testCustomer.getId(), idle.getId(), -1L), lastMonth.getYear(), lastMonth.getMonthValue())
+                .stream().collect(Collectors.toMap(AccountStatementVO::getCustomerId, Function.identity()));
+        assertEquals(2, batch.size());
+        assertEquals(financeService.generateMonthlyStatement(testCustomer.getId(), lastMonth.getYear(), lastMonth.getMonthValue()),
+                batch.get(testCustomer.getId()));
+        assertEquals(3000.0, batch.get(testCustomer.getId()).getClosingBalance());
+        assertEquals(0.0, batch.get(idle.getId()).getOpeningBalance());
+        assertTrue(batch.get(idle.getId()).getDetails().isEmpty());
+
+        // 未结束的月份不能月结
+        assertThrows(BusinessException.class, () -> periodCloseService.closePeriod(now));
+    }
+
+    @Test
+    void testCustomerLedger() {
+        testCustomer.setPaymentTermDays(0);
+        customerRepository.save(testCustomer);
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        setCreateTime(testOrders.get(0).getId(), LocalDateTime.now().minusDays(40));
+        createReceivable(testOrders.get(1).getId(), testCustomer.getId(), 2000.0);
+        setCreateTime(testOrders.get(1).getId(), LocalDateTime.now().minusDays(10));
+
+        Receivable first = receivableRepository.findByOrderId(testOrders.get(0).getId()).orElseThrow();
+        PaymentBatchDTO dto = new PaymentBatchDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setTotalAmount(600.0);
+        dto.setPaymentMethod("转账");
+        dto.setAllocations(List.of(createAllocation(first.getId(), 600.0)));
+        financeService.recordBatchPayment(dto);
+
+        // 分录按客户顺序号连续追加
+        List<CustomerLedgerEntry> entries = customerLedgerRepository.findByCustomerIdOrderBySeq(testCustomer.getId());
+        assertEquals(List.of(1L, 2L, 3L, 4L), entries.stream().map(CustomerLedgerEntry::getSeq).toList());
+        assertEquals(List.of(CustomerLedgerEntry.EntryType.SALE, CustomerLedgerEntry.EntryType.SALE,
+                        CustomerLedgerEntry.EntryType.PAYMENT, CustomerLedgerEntry.EntryType.ALLOCATION),
+                entries.stream().map(CustomerLedgerEntry::getEntryType).toList());
+        assertEquals(first.getId(), entries.get(3).getRefId());
+
+        // 历史账龄：收款之前第1笔全部未收，收款之后只剩 400
+        LocalDate today = LocalDate.now();
+        ReceivableAgeVO before = financeService.analyzeReceivableAgeAt(testCustomer.getId(), today);
+        assertEquals(2000.0, before.getWithin15Days());
+        assertEquals(1000.0, before.getWithin60Days());
+        assertEquals(3000.0, before.getTotalUnpaid());
+        ReceivableAgeVO after = financeService.analyzeReceivableAgeAt(testCustomer.getId(), today.plusDays(1));
+        assertEquals(400.0, after.getWithin60Days());
+        assertEquals(2400.0, after.getTotalUnpaid());
+        assertEquals(2400.0, periodCloseService.balanceAt(testCustomer.getId(), today.plusDays(1)));
+
+        // 作废未收款的应收记作废分录，余额和账龄随之减少
+        financeService.voidReceivable(testOrders.get(1).getId());
+        assertEquals(CustomerLedgerEntry.EntryType.VOID, customerLedgerRepository
+                .findByCustomerIdOrderBySeq(testCustomer.getId()).get(4).getEntryType());
+        assertEquals(400.0, financeService.analyzeReceivableAgeAt(testCustomer.getId(), today.plusDays(1)).getTotalUnpaid());
+        assertEquals(400.0, periodCloseService.balanceAt(testCustomer.getId(), today.plusDays(1)));
+
+        // 补记只补缺失的单据，已记账的不重复
+        financeService.backfillLedger();
+        assertEquals(5, customerLedgerRepository.findByCustomerIdOrderBySeq(testCustomer.getId()).size());
+    }
+
+    @Test
+    void testLedgerMatchesBalanceAfterOverpayment() {
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        createReceivable(testOrders.get(1).getId(), testCustomer.getId(), 2000.0);
+
+        // 收款超过未收总额，余额只减少已核销部分
+        PaymentAutoDTO dto = new PaymentAutoDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setAmount(5000.0);
+        dto.setPaymentMethod("转账");
+        financeService.autoAllocatePayment(dto);
+
+        // 明细账余额影响之和等于客户欠款余额
+        long balanceCents = customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents();
+        List<CustomerLedgerEntry> entries = customerLedgerRepository.findByCustomerIdOrderBySeq(testCustomer.getId());
+        assertEquals(balanceCents, entries.stream().mapToLong(CustomerLedgerEntry::getBalanceDeltaCents).sum());
+        assertEquals(-300000L, entries.stream()
+                .filter(e -> e.getEntryType() == CustomerLedgerEntry.EntryType.PAYMENT)
+                .mapToLong(CustomerLedgerEntry::getBalanceDeltaCents).sum());
+    }
+
+    @Test
+    void testStatementJob(@TempDir Path outputDir) throws Exception {
+        // 归档写到临时目录，不在工作目录留下文件
+        Object defaultOutputDir = ReflectionTestUtils.getField(statementJobService, "outputDir");
+        ReflectionTestUtils.setField(statementJobService, "outputDir", outputDir.toString());
+        try {
+            // 任务在后台线程运行，只能看到已提交的数据
+            YearMonth lastMonth = YearMonth.now().minusMonths(1);
+            StatementJobVO job = statementJobService.start(lastMonth);
+
+            long deadline = System.currentTimeMillis() + 60_000;
+            while ("RUNNING".equals(job.getStatus()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(200);
+                job = statementJobService.getJob(job.getJobId());
+            }
+
+            assertEquals("DONE", job.getStatus());
+            assertEquals(job.getTotalCustomers(), job.getProcessedCustomers());
+            Path output = Paths.get(job.getOutputFile());
+            assertTrue(Files.exists(output));
+            assertEquals(outputDir.toAbsolutePath(), output.getParent());
+        } finally {
+            ReflectionTestUtils.setField(statementJobService, "outputDir", defaultOutputDir);
+        }
+    }
+
+    @Test
+    void testStatementJobRunsOneAtATime(@TempDir Path outputDir) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StatementJobService service = newStatementJobService(release, outputDir);
+        try {
+            // 第一个任务阻塞在读取客户列表，期间再次启动必然被拒绝
+            YearMonth lastMonth = YearMonth.now().minusMonths(1);
+            StatementJobVO first = service.start(lastMonth);
+            BusinessException e = assertThrows(BusinessException.class, () -> service.start(lastMonth));
+            assertEquals(409, e.getCode());
+
+            release.countDown();
+            assertEquals("DONE", awaitJobEnd(service, first.getJobId()).getStatus());
+            assertNotNull(service.start(lastMonth).getJobId());
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testStatementJobEviction(@TempDir Path outputDir) throws Exception {
+        CountDownLatch release = new CountDownLatch(0);
+        StatementJobService service = newStatementJobService(release, outputDir);
+        try {
+            StatementJobVO job = awaitJobEnd(service, service.start(YearMonth.now().minusMonths(1)).getJobId());
+
+            // 保留期内仍可查询，过期后清理
+            service.evictFinished();
+            assertEquals("DONE", service.getJob(job.getJobId()).getStatus());
+
+            ReflectionTestUtils.setField(service, "retentionMinutes", 0L);
+            service.evictFinished();
+            BusinessException e = assertThrows(BusinessException.class, () -> service.getJob(job.getJobId()));
+            assertEquals(404, e.getCode());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 独立的批量对账单服务：读取客户列表时等待 release 放行，没有客户
+     */
+    private StatementJobService newStatementJobService(CountDownLatch release, Path outputDir) {
+        CustomerRepository blockingRepository = mock(CustomerRepository.class);
+        when(blockingRepository.findAllIds()).thenAnswer(invocation -> {
+            assertTrue(release.await(30, TimeUnit.SECONDS));
+            return List.of();
+        });
+        StatementJobService service = new StatementJobService(1);
+        ReflectionTestUtils.setField(service, "financeService", financeService);
+        ReflectionTestUtils.setField(service, "customerRepository", blockingRepository);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "outputDir", outputDir.toString());
+        ReflectionTestUtils.setField(service, "partitionSize", 200);
+        ReflectionTestUtils.setField(service, "retentionMinutes", 60L);
+        return service;
+    }
+
+    private StatementJobVO awaitJobEnd(StatementJobService service, String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        StatementJobVO job = service.getJob(jobId);
+        while (job.getEndTime() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            job = service.getJob(jobId);
+        }
+        assertNotNull(job.getEndTime());
+        return job;
+    }
+
     @Test
     void testInvalidBatchPayment() {
         // 创建应收
-        financeService.createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
         Receivable receivable = receivableRepository.findByCustomerId(testCustomer.getId()).get(0);
 
         // 核销金额总和与收款金额不一致
@@ -218,7 +803,7 @@ class FinanceTestsV2 {
     @Test
     void testExceedUnpaidAmount() {
         // 创建应收
-        financeService.createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
+        createReceivable(testOrders.get(0).getId(), testCustomer.getId(), 1000.0);
         Receivable receivable = receivableRepository.findByCustomerId(testCustomer.getId()).get(0);
 
         // 核销金额超过未收金额
@@ -234,6 +819,191 @@ class FinanceTestsV2 {
         assertThrows(Exception.class, () -> financeService.recordBatchPayment(dto));
     }
 
+    @Test
+    void testBankImport() {
+        String phone = "139" + String.format("%08d", System.currentTimeMillis() % 100000000);
+        testCustomer.setPhone(phone);
+        customerRepository.save(testCustomer);
+        for (Order order : testOrders) {
+            createReceivable(order.getId(), testCustomer.getId(), Money.toYuan(order.getTotalAmountCents()));
+        }
+
+        // 摘要带订单号、按电话、无法识别、支出、超过两位小数各一行
+        String csv = "\uFEFF交易日期,对方户名,电话,交易金额,摘要\n" +
+                "2025-01-05,测试客户,,1000.00,货款 " + testOrders.get(0).getOrderNo() + "\n" +
+                "2025-01-06,测试客户,+86 " + phone + ",\"2,000.00\",转账\n" +
+                "2025-01-07,路人,,0.07,利息\n" +
+                "2025-01-08,银行,,-15.00,手续费\n" +
+                "2025-01-09,路人,,12.345,利息\n";
+
+        BankImportResultVO result = bankImportService.match(new StringReader(csv));
+
+        assertEquals(3, result.getTotalLines());
+        assertEquals(2, result.getSkippedLines());
+        assertEquals(0.07, result.getLines().get(2).getAmount());
+        assertEquals(2, result.getMatchedLines());
+        assertEquals(1, result.getUnmatchedLines());
+
+        BankImportResultVO.Line byOrderNo = result.getLines().get(0);
+        assertEquals("ORDER_NO", byOrderNo.getMatchedBy());
+        assertEquals(testCustomer.getId(), byOrderNo.getCustomerId());
+        assertEquals(testOrders.get(0).getOrderNo(), byOrderNo.getAllocations().get(0).getOrderNo());
+
+        // 第一笔应收已被上一行核销，按电话匹配的2000元核销金额相等的第二笔
+        BankImportResultVO.Line byPhone = result.getLines().get(1);
+        assertEquals("PHONE", byPhone.getMatchedBy());
+        assertEquals(1, byPhone.getAllocations().size());
+        assertEquals(testOrders.get(1).getOrderNo(), byPhone.getAllocations().get(0).getOrderNo());
+        assertEquals(0.0, byPhone.getUnallocatedAmount());
+
+        assertEquals("NONE", result.getLines().get(2).getMatchedBy());
+        assertNull(result.getLines().get(2).getPayment());
+
+        // 确认入账
+        List<PaymentBatchDTO> payments = List.of(byOrderNo.getPayment(), byPhone.getPayment());
+        BankImportConfirmVO confirmed = bankImportService.confirm(payments);
+        assertEquals(2, confirmed.getSucceeded());
+        assertTrue(confirmed.getFailures().isEmpty());
+        assertEquals(Receivable.ReceivableStatus.PAID,
+                receivableRepository.findByOrderId(testOrders.get(0).getId()).orElseThrow().getStatus());
+        assertEquals(Receivable.ReceivableStatus.PAID,
+                receivableRepository.findByOrderId(testOrders.get(1).getId()).orElseThrow().getStatus());
+        assertEquals(300000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+
+        // 重复确认：流水已入账，跳过不报错
+        BankImportConfirmVO repeated = bankImportService.confirm(payments);
+        assertEquals(0, repeated.getSucceeded());
+        assertTrue(repeated.getFailures().isEmpty());
+        assertEquals(List.of(0, 1), repeated.getDuplicates());
+
+        // 重复导入同一文件：已入账的流水只标记，不再匹配第三笔未收应收
+        BankImportResultVO reimported = bankImportService.match(new StringReader(csv));
+        assertEquals(2, reimported.getPostedLines());
+        assertEquals(0, reimported.getMatchedLines());
+        assertTrue(reimported.getLines().get(1).isPosted());
+        assertNull(reimported.getLines().get(1).getPayment());
+        assertEquals(byPhone.getBankRef(), reimported.getLines().get(1).getBankRef());
+
+        // 同一次提交中流水标识重复的收款只入账一次
+        PaymentBatchDTO.AllocationItem item = new PaymentBatchDTO.AllocationItem();
+        item.setReceivableId(receivableRepository.findByOrderId(testOrders.get(2).getId()).orElseThrow().getId());
+        item.setAmount(1000.0);
+        PaymentBatchDTO dto = new PaymentBatchDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setTotalAmount(1000.0);
+        dto.setBankRef("SN-" + System.nanoTime());
+        dto.setAllocations(List.of(item));
+        BankImportConfirmVO twice = bankImportService.confirm(List.of(dto, dto));
+        assertEquals(1, twice.getSucceeded());
+        assertEquals(List.of(1), twice.getDuplicates());
+        assertEquals(200000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+    }
+
+    @Test
+    void testSchedulerPoolIsNotSingleThreaded() {
+        // 逾期扫描、月结与财务事件投递共用调度线程池，单线程时互相阻塞
+        assertTrue(taskScheduler.getScheduledThreadPoolExecutor().getCorePoolSize() >= 2);
+    }
+
+    @Test
+    void testDueDateFromOrderDate() {
+        // 订单5天前下单、今天才投递生成应收：到期日从下单日期起算
+        LocalDate orderDate = LocalDate.now().minusDays(5);
+        jdbcTemplate.update("UPDATE \"order\" SET create_time = ? WHERE id = ?",
+                orderDate.atTime(10, 0), testOrders.get(0).getId());
+
+        List<Receivable> receivables = new ArrayList<>();
+        for (Order order : testOrders.subList(0, 2)) {
+            Receivable receivable = new Receivable();
+            receivable.setOrderId(order.getId());
+            receivable.setCustomerId(testCustomer.getId());
+            receivable.setAmountCents(order.getTotalAmountCents());
+            receivable.setPaidAmountCents(0L);
+            receivable.setStatus(Receivable.ReceivableStatus.UNPAID);
+            receivables.add(receivable);
+        }
+        assertEquals(2, financeService.createReceivables(receivables));
+
+        assertEquals(orderDate.plusDays(30),
+                receivableRepository.findByOrderId(testOrders.get(0).getId()).orElseThrow().getDueDate());
+        assertEquals(LocalDate.now().plusDays(30),
+                receivableRepository.findByOrderId(testOrders.get(1).getId()).orElseThrow().getDueDate());
+    }
+
+    @Test
+    void testOverdueScan() {
+        testCustomer.setPaymentTermDays(10);
+        customerRepository.save(testCustomer);
+        for (Order order : testOrders) {
+            createReceivable(order.getId(), testCustomer.getId(), Money.toYuan(order.getTotalAmountCents()));
+        }
+        LocalDate dueDate = LocalDate.now().plusDays(10);
+        Receivable r1 = receivableRepository.findByOrderId(testOrders.get(0).getId()).orElseThrow();
+        Receivable r2 = receivableRepository.findByOrderId(testOrders.get(1).getId()).orElseThrow();
+        Receivable r3 = receivableRepository.findByOrderId(testOrders.get(2).getId()).orElseThrow();
+        assertEquals(dueDate, r1.getDueDate());
+
+        // 早期应收没有到期日，由扫描补齐
+        jdbcTemplate.update("UPDATE receivable SET due_date = NULL WHERE id = ?", r1.getId());
+
+        // 到期30天后扫描：标记逾期，按日费率 0.05% 计提30天滞纳金
+        LocalDate asOf = dueDate.plusDays(30);
+        OverdueScanVO progress = overdueScanner.scan(asOf);
+        assertTrue(progress.isFinished());
+        assertEquals(asOf, progress.getScanDate());
+        assertTrue(progress.getNewlyOverdue() >= 3);
+
+        r1 = receivableRepository.findById(r1.getId()).orElseThrow();
+        assertEquals(dueDate, r1.getDueDate());
+        assertNotNull(r1.getOverdueTime());
+        assertEquals(1500L, r1.getLateFeeCents());
+        assertEquals(4500L, receivableRepository.findById(r3.getId()).orElseThrow().getLateFeeCents());
+
+        // 同一天重复扫描不重复计提
+        overdueScanner.scan(asOf);
+        assertEquals(1500L, receivableRepository.findById(r1.getId()).orElseThrow().getLateFeeCents());
+
+        // 模拟中断：断点停在 r2，续扫只处理之后的应收
+        jdbcTemplate.update("UPDATE scan_checkpoint SET scan_date = ?, last_id = ?, finished = false WHERE name = 'overdue'",
+                asOf.plusDays(1), r2.getId());
+        overdueScanner.scan(asOf.plusDays(1));
+        assertEquals(1500L, receivableRepository.findById(r1.getId()).orElseThrow().getLateFeeCents());
+        assertEquals(3000L, receivableRepository.findById(r2.getId()).orElseThrow().getLateFeeCents());
+        assertEquals(4650L, receivableRepository.findById(r3.getId()).orElseThrow().getLateFeeCents());
+
+        // 下一轮补计上一轮漏掉的天数
+        overdueScanner.scan(asOf.plusDays(2));
+        assertEquals(1600L, receivableRepository.findById(r1.getId()).orElseThrow().getLateFeeCents());
+        assertEquals(4800L, receivableRepository.findById(r3.getId()).orElseThrow().getLateFeeCents());
+    }
+
+    private void createReceivable(Long orderId, Long customerId, Double amount) {
+        // 与财务事件投递走同一入口
+        Receivable receivable = new Receivable();
+        receivable.setOrderId(orderId);
+        receivable.setCustomerId(customerId);
+        receivable.setAmountCents(Money.toCents(amount));
+        receivable.setPaidAmountCents(0L);
+        receivable.setStatus(Receivable.ReceivableStatus.UNPAID);
+        assertEquals(1, financeService.createReceivables(List.of(receivable)));
+    }
+
+    private void setCreateTime(Long orderId, LocalDateTime createTime) {
+        // 到期日随创建日期平移（保持账期不变）
+        jdbcTemplate.update("UPDATE receivable SET due_date = due_date + (CAST(? AS date) - CAST(create_time AS date)), " +
+                "create_time = ? WHERE order_id = ?", createTime, createTime, orderId);
+        jdbcTemplate.update("UPDATE customer_ledger SET entry_time = ? WHERE entry_type = 'SALE' " +
+                "AND ref_id = (SELECT id FROM receivable WHERE order_id = ?)", createTime, orderId);
+    }
+
+    private void setPaymentTime(Long paymentId, LocalDateTime createTime) {
+        jdbcTemplate.update("UPDATE payment SET create_time = ? WHERE id = ?", createTime, paymentId);
+        jdbcTemplate.update("UPDATE customer_ledger SET entry_time = ? WHERE entry_type IN ('PAYMENT', 'ALLOCATION') " +
+                "AND customer_id = (SELECT customer_id FROM payment WHERE id = ?) " +
+                "AND seq >= (SELECT seq FROM customer_ledger WHERE entry_type = 'PAYMENT' AND ref_id = ?)",
+                createTime, paymentId, paymentId);
+    }
+
     private PaymentBatchDTO.AllocationItem createAllocation(Long receivableId, Double amount) {
         PaymentBatchDTO.AllocationItem item = new PaymentBatchDTO.AllocationItem();
         item.setReceivableId(receivableId);
@@ -1,19 +1,44 @@
 package com.yourcompany.erp.order;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.erp.common.bizno.BizNoGenerator;
+import com.yourcompany.erp.common.exception.BusinessException;
+import com.yourcompany.erp.common.idempotency.IdempotencyStore;
+import com.yourcompany.erp.common.response.CursorPage;
 import com.yourcompany.erp.customer.entity.Customer;
 import com.yourcompany.erp.customer.repository.CustomerRepository;
+import com.yourcompany.erp.customer.service.CustomerService;
+import com.yourcompany.erp.finance.entity.Receivable;
+import com.yourcompany.erp.finance.repository.ReceivableRepository;
+import com.yourcompany.erp.finance.service.FinanceOutboxService;
+import com.yourcompany.erp.order.dto.OrderBatchDTO;
 import com.yourcompany.erp.order.dto.OrderDTO;
 import com.yourcompany.erp.order.dto.OrderVO;
+import com.yourcompany.erp.order.entity.Order;
+import com.yourcompany.erp.order.service.OrderExportService;
 import com.yourcompany.erp.order.service.OrderService;
 import com.yourcompany.erp.product.entity.Product;
 import com.yourcompany.erp.product.repository.ProductRepository;
+import com.zaxxer.hikari.HikariDataSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,12 +49,33 @@ class OrderTests {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private BizNoGenerator bizNoGenerator;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private CustomerService customerService;
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ReceivableRepository receivableRepository;
+
+    @Autowired
+    private FinanceOutboxService financeOutboxService;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
     private Customer testCustomer;
     private Product testProduct;
 
@@ -39,15 +85,15 @@ class OrderTests {
         testCustomer = new Customer();
         testCustomer.setName("测试客户");
         testCustomer.setLevel(Customer.CustomerLevel.NORMAL);
-        testCustomer.setCreditLimit(10000.0);
-        testCustomer.setBalance(0.0);
+        testCustomer.setCreditLimitCents(1000000L);
+        testCustomer.setBalanceCents(0L);
         testCustomer = customerRepository.save(testCustomer);
 
         // 创建测试商品
         testProduct = new Product();
         testProduct.setName("测试商品");
-        testProduct.setNormalPrice(100.0);
-        testProduct.setVipPrice(90.0);
+        testProduct.setNormalPriceCents(10000L);
+        testProduct.setVipPriceCents(9000L);
         testProduct.setStock(100);
         testProduct.setStatus(1);
         testProduct = productRepository.save(testProduct);
@@ -80,6 +126,190 @@ class OrderTests {
         assertEquals(95, updatedProduct.getStock());
     }
 
+    @Test
+    void testCreateOrderMultiLine() {
+        // 第二个商品
+        Product otherProduct = new Product();
+        otherProduct.setName("测试商品2");
+        otherProduct.setNormalPriceCents(2000L);
+        otherProduct.setVipPriceCents(1800L);
+        otherProduct.setStock(50);
+        otherProduct.setStatus(1);
+        otherProduct = productRepository.save(otherProduct);
+
+        // 同一商品出现两行，数量合并扣减
+        OrderDTO dto = new OrderDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setItems(List.of(
+                createItem(testProduct.getId(), 3),
+                createItem(otherProduct.getId(), 10),
+                createItem(testProduct.getId(), 2)));
+
+        OrderVO vo = orderService.createOrder(dto);
+
+        // 断言
+        assertEquals(700.0, vo.getTotalAmount());  // 100 * 5 + 20 * 10
+        assertEquals(3, vo.getItems().size());
+        assertEquals(95, productRepository.findById(testProduct.getId()).orElseThrow().getStock());
+        assertEquals(40, productRepository.findById(otherProduct.getId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void testReceivableCreatedByOutbox() {
+        OrderDTO dto = new OrderDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setItems(List.of(createItem(testProduct.getId(), 5)));
+        OrderVO vo = orderService.createOrder(dto);
+
+        // 下单事务内只登记事件，不直接生成应收
+        assertTrue(receivableRepository.findByOrderId(vo.getId()).isEmpty());
+
+        // 投递后生成应收、更新客户欠款；重复投递不重复记账
+        financeOutboxService.dispatchBatch(100);
+        Receivable receivable = receivableRepository.findByOrderId(vo.getId()).orElseThrow();
+        assertEquals(50000L, receivable.getAmountCents());
+        assertEquals(50000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+        assertEquals(0, financeOutboxService.dispatchBatch(100));
+    }
+
+    @Test
+    void testGetCustomerOrders() {
+        // 创建两个订单，明细行数不同
+        OrderDTO dto1 = new OrderDTO();
+        dto1.setCustomerId(testCustomer.getId());
+        dto1.setItems(List.of(createItem(testProduct.getId(), 1)));
+        orderService.createOrder(dto1);
+
+        OrderDTO dto2 = new OrderDTO();
+        dto2.setCustomerId(testCustomer.getId());
+        dto2.setItems(List.of(createItem(testProduct.getId(), 1), createItem(testProduct.getId(), 2)));
+        orderService.createOrder(dto2);
+
+        // 明细批量加载后按订单正确分组
+        List<OrderVO> orders = orderService.getCustomerOrders(testCustomer.getId());
+        assertEquals(2, orders.size());
+        assertEquals(3, orders.stream().mapToInt(o -> o.getItems().size()).sum());
+        orders.forEach(o -> assertFalse(o.getItems().isEmpty()));
+    }
+
+    @Test
+    void testOrderListByCursor() {
+        // 创建三个订单
+        for (int i = 0; i < 3; i++) {
+            OrderDTO dto = new OrderDTO();
+            dto.setCustomerId(testCustomer.getId());
+            dto.setItems(List.of(createItem(testProduct.getId(), 1)));
+            orderService.createOrder(dto);
+        }
+
+        // 每页两条翻完全部订单，结果不重复
+        CursorPage<OrderVO> first = orderService.getOrderListByCursor(null, "PENDING", null, 2);
+        assertEquals(2, first.getContent().size());
+        assertTrue(first.isHasMore());
+
+        CursorPage<OrderVO> second = orderService.getOrderListByCursor(null, "PENDING", first.getNextCursor(), 2);
+        assertFalse(second.getContent().isEmpty());
+        second.getContent().forEach(o -> assertTrue(first.getContent().stream().noneMatch(f -> f.getId().equals(o.getId()))));
+
+        // 非法游标
+        assertThrows(Exception.class, () -> orderService.getOrderListByCursor(null, null, "not-a-cursor", 2));
+    }
+
+    @Test
+    void testCursorPageSizeBounds() {
+        // 每页数量 1 到 100，越界返回 400
+        for (int size : new int[]{0, -1, 101}) {
+            BusinessException e = assertThrows(BusinessException.class,
+                    () -> orderService.getOrderListByCursor(null, null, null, size));
+            assertEquals(400, e.getCode());
+        }
+
+        CursorPage<OrderVO> one = orderService.getOrderListByCursor(null, null, null, 1);
+        assertTrue(one.getContent().size() <= 1);
+        CursorPage<OrderVO> max = orderService.getOrderListByCursor(null, null, null, 100);
+        assertTrue(max.getContent().size() <= 100);
+    }
+
+    @Test
+    void testOrderNoUnique() throws Exception {
+        // 多线程并发取号不重复
+        Set<String> orderNos = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2000; i++) {
+            executor.submit(() -> orderNos.add(bizNoGenerator.next("TST")));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(2000, orderNos.size());
+        orderNos.forEach(no -> assertTrue(no.matches("TST\\d{8}\\d{8,}")));
+    }
+
+    @Test
+    void testOrderNoWithoutBusinessConnection() throws Exception {
+        // 业务连接池耗尽时仍能领取号段（号段走专用连接，不会与业务事务互相等待）
+        List<Connection> held = new ArrayList<>();
+        try {
+            int idle = dataSource.getMaximumPoolSize() - dataSource.getHikariPoolMXBean().getActiveConnections();
+            for (int i = 0; i < idle; i++) {
+                held.add(dataSource.getConnection());
+            }
+            String prefix = "T" + (System.nanoTime() % 100000);
+            String first = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> bizNoGenerator.next(prefix));
+            assertTrue(first.startsWith(prefix));
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    void testIdempotentCreateOrder() {
+        OrderDTO dto = new OrderDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setItems(List.of(createItem(testProduct.getId(), 5)));
+
+        // 同一个幂等键重试，按保存的订单ID返回首次下单的订单，且不重复扣库存
+        OrderVO first = idempotencyStore.execute("test:idem-1", dto,
+                () -> orderService.createOrder(dto), OrderVO::getId, orderService::getOrderDetail);
+        OrderDTO same = new OrderDTO();
+        same.setCustomerId(testCustomer.getId());
+        same.setItems(List.of(createItem(testProduct.getId(), 5)));
+        OrderVO retry = idempotencyStore.execute("test:idem-1", same,
+                () -> orderService.createOrder(same), OrderVO::getId, orderService::getOrderDetail);
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(first.getOrderNo(), retry.getOrderNo());
+        assertEquals(95, productRepository.findById(testProduct.getId()).orElseThrow().getStock());
+
+        // 同一个键携带不同参数
+        OrderDTO other = new OrderDTO();
+        other.setCustomerId(testCustomer.getId());
+        other.setItems(List.of(createItem(testProduct.getId(), 1)));
+        BusinessException e = assertThrows(BusinessException.class, () -> idempotencyStore.execute("test:idem-1", other,
+                () -> orderService.createOrder(other), OrderVO::getId, orderService::getOrderDetail));
+        assertEquals(422, e.getCode());
+    }
+
+    @Test
+    void testIdempotencyStoreBounded() {
+        IdempotencyStore store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(store, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(store, "waitSeconds", 1L);
+        ReflectionTestUtils.setField(store, "maxEntries", 2);
+        store.init();
+        AtomicInteger calls = new AtomicInteger();
+
+        store.execute("k1", "a", calls::incrementAndGet, Function.identity(), Function.identity());
+        store.execute("k2", "b", calls::incrementAndGet, Function.identity(), Function.identity());
+        assertEquals(1, store.execute("k1", "a", calls::incrementAndGet, Function.identity(), Function.identity()));
+
+        // 超过上限时淘汰最早写入的键，被淘汰的键再次请求会重新执行
+        store.execute("k3", "c", calls::incrementAndGet, Function.identity(), Function.identity());
+        assertEquals(4, store.execute("k1", "a", calls::incrementAndGet, Function.identity(), Function.identity()));
+    }
+
     @Test
     void testOrderStatusFlow() {
         // 创建订单
@@ -106,6 +336,57 @@ class OrderTests {
         assertEquals("COMPLETED", completed.getStatus().name());
     }
 
+    @Test
+    void testBatchTransition() {
+        OrderDTO dto = new OrderDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setItems(List.of(createItem(testProduct.getId(), 1)));
+        OrderVO order1 = orderService.createOrder(dto);
+        OrderVO order2 = orderService.createOrder(dto);
+
+        // 按ID批量审核
+        OrderBatchDTO byIds = new OrderBatchDTO();
+        byIds.setIds(List.of(order1.getId(), order2.getId()));
+        assertEquals(2, orderService.batchTransition(Order.OrderStatus.APPROVED, byIds));
+
+        // 已审核的订单再次审核被跳过
+        assertEquals(0, orderService.batchTransition(Order.OrderStatus.APPROVED, byIds));
+
+        // 按订单号筛选发货
+        OrderBatchDTO byFilter = new OrderBatchDTO();
+        byFilter.setByFilter(true);
+        byFilter.setOrderNo(order1.getOrderNo());
+        assertEquals(1, orderService.batchTransition(Order.OrderStatus.SHIPPED, byFilter));
+        assertEquals("SHIPPED", orderService.getOrderDetail(order1.getId()).getStatus().name());
+        assertEquals("APPROVED", orderService.getOrderDetail(order2.getId()).getStatus().name());
+
+        // 单个状态变更：状态不符
+        assertThrows(Exception.class, () -> orderService.completeOrder(order2.getId()));
+    }
+
+    @Test
+    void testExportOrders() {
+        OrderDTO dto = new OrderDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setRemark("备注,含逗号");
+        dto.setItems(List.of(createItem(testProduct.getId(), 1), createItem(testProduct.getId(), 2)));
+        OrderVO order = orderService.createOrder(dto);
+
+        // CSV：每个明细一行，含逗号的字段加引号
+        StringWriter csv = new StringWriter();
+        orderExportService.exportCsv(order.getOrderNo(), null, csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].contains("\"备注,含逗号\""));
+
+        // NDJSON：每个订单一行，明细合并到订单内
+        StringWriter ndjson = new StringWriter();
+        orderExportService.exportNdjson(order.getOrderNo(), "pending", ndjson);
+        String[] orders = ndjson.toString().split("\n");
+        assertEquals(1, orders.length);
+        assertTrue(orders[0].contains(order.getOrderNo()));
+    }
+
     @Test
     void testInsufficientStock() {
         // 准备库存不足的订单
@@ -136,4 +417,51 @@ class OrderTests {
         assertThrows(Exception.class, () -> orderService.createOrder(dto));
     }
 
+    @Test
+    void testCreditReservation() {
+        testCustomer.setCreditLimitCents(80000L);
+        customerRepository.saveAndFlush(testCustomer);
+
+        OrderDTO dto = new OrderDTO();
+        dto.setCustomerId(testCustomer.getId());
+        dto.setItems(List.of(createItem(testProduct.getId(), 5)));
+
+        // 第一单预占 500，第二单 500 超出剩余额度
+        OrderVO first = orderService.createOrder(dto);
+        assertEquals(50000L, customerRepository.findById(testCustomer.getId()).orElseThrow().getCreditReservedCents());
+        assertThrows(BusinessException.class, () -> orderService.createOrder(dto));
+
+        // 可用额度扣除预占；有预占时不能删除客户
+        assertEquals(300.0, customerService.getCustomer(testCustomer.getId()).getAvailableCredit());
+        assertThrows(BusinessException.class, () -> customerService.deleteCustomer(testCustomer.getId()));
+
+        // 取消后释放预占、归还库存，事件不再投递
+        orderService.cancelOrder(first.getId());
+        Customer released = customerRepository.findById(testCustomer.getId()).orElseThrow();
+        assertEquals(0L, released.getCreditReservedCents());
+        assertEquals(100, productRepository.findById(testProduct.getId()).orElseThrow().getStock());
+        assertEquals(Order.OrderStatus.CANCELLED, orderService.getOrderDetail(first.getId()).getStatus());
+        financeOutboxService.dispatchBatch(100);
+        assertTrue(receivableRepository.findByOrderId(first.getId()).isEmpty());
+        assertThrows(BusinessException.class, () -> orderService.cancelOrder(first.getId()));
+
+        // 投递后预占转为欠款；再取消则作废应收
+        OrderVO second = orderService.createOrder(dto);
+        financeOutboxService.dispatchBatch(100);
+        Customer settled = customerRepository.findById(testCustomer.getId()).orElseThrow();
+        assertEquals(0L, settled.getCreditReservedCents());
+        assertEquals(50000L, settled.getBalanceCents());
+
+        orderService.cancelOrder(second.getId());
+        assertTrue(receivableRepository.findByOrderId(second.getId()).isEmpty());
+        assertEquals(0L, customerRepository.findById(testCustomer.getId()).orElseThrow().getBalanceCents());
+    }
+
+    private OrderDTO.OrderItemDTO createItem(Long productId, Integer quantity) {
+        OrderDTO.OrderItemDTO item = new OrderDTO.OrderItemDTO();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        return item;
+    }
+
 }
@@ -6,7 +6,15 @@ import com.yourcompany.erp.product.service.ProductService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,6 +25,9 @@ class ProductTests {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Test
     void testCreateProduct() {
         // 准备数据
@@ -56,4 +67,86 @@ class ProductTests {
         assertEquals(5, updated.getStock());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testShardedStock() {
+        ProductDTO dto = new ProductDTO();
+        dto.setName("分片库存商品");
+        dto.setNormalPrice(50.0);
+        dto.setVipPrice(45.0);
+        dto.setStock(10);
+        ProductVO product = productService.createProduct(dto);
+
+        // 拆成3个分片（4/3/3），总库存不变
+        ProductVO sharded = productService.changeStockShards(product.getId(), 3);
+        assertEquals(10, sharded.getStock());
+        assertEquals(3, sharded.getStockShards());
+
+        // 单个分片不够时合并扣减
+        productService.reduceStock(product.getId(), 5);
+        assertEquals(5, productService.getProduct(product.getId()).getStock());
+
+        productService.reduceStockBatch(Map.of(product.getId(), 1));
+        productService.addStock(product.getId(), 2);
+        assertEquals(6, productService.getProduct(product.getId()).getStock());
+
+        // 低于预警阈值，出现在预警列表
+        assertTrue(productService.getLowStockProducts().stream().anyMatch(p -> p.getId().equals(product.getId())));
+
+        // 超卖被拒绝
+        assertThrows(Exception.class, () -> productService.reduceStock(product.getId(), 7));
+
+        // 恢复为单行库存
+        ProductVO merged = productService.changeStockShards(product.getId(), 1);
+        assertEquals(6, merged.getStock());
+        assertNull(merged.getStockShards());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)  // 两个事务需看到已提交的商品
+    void testShardedStockConcurrentOrders() throws Exception {
+        ProductDTO dto = new ProductDTO();
+        dto.setName("分片并发商品");
+        dto.setNormalPrice(50.0);
+        dto.setVipPrice(45.0);
+        dto.setStock(10);
+        Long productId = productService.createProduct(dto).getId();
+        productService.changeStockShards(productId, 2);
+        // 每个订单另带一个普通商品，批量扣减语句才会真正执行加锁
+        dto.setName("并发订单普通商品A");
+        Long plainA = productService.createProduct(dto).getId();
+        dto.setName("并发订单普通商品B");
+        Long plainB = productService.createProduct(dto).getId();
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CountDownLatch firstHolding = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        try {
+            // 第一个下单事务扣减后不提交，一直持有锁
+            CompletableFuture<Void> first = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status -> {
+                productService.reduceStockBatch(Map.of(productId, 1, plainA, 1));
+                firstHolding.countDown();
+                try {
+                    releaseFirst.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(firstHolding.await(10, TimeUnit.SECONDS));
+
+            // 第二个下单事务不等第一个提交即可完成
+            CompletableFuture<Void> second = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status ->
+                    productService.reduceStockBatch(Map.of(productId, 1, plainB, 1))));
+            assertDoesNotThrow(() -> second.get(5, TimeUnit.SECONDS));
+
+            releaseFirst.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            assertEquals(8, productService.getProduct(productId).getStock());
+        } finally {
+            releaseFirst.countDown();
+            productService.deleteProduct(productId);
+            productService.deleteProduct(plainA);
+            productService.deleteProduct(plainB);
+        }
+    }
+
+}
@@ -4,12 +4,14 @@ import request from '@/utils/request';
 /**
  * 创建订单
  * @param {Object} data - { customerId, items: [{ productId, quantity }], remark }
+ * @param {String} idempotencyKey - 幂等键（可选，同一次下单的重试使用同一个键，避免重复下单）
  */
-export function createOrder(data) {
+export function createOrder(data, idempotencyKey) {
 	return request({
 		url: '/app/order',
 		method: 'POST',
-		data
+		data,
+		header: idempotencyKey ? { 'Idempotency-Key': idempotencyKey } : {}
 	});
 }
 